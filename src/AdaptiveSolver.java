@@ -0,0 +1,256 @@
+import java.util.Arrays;
+
+/**
+ * Minesweeper solver choosing the next technique adaptively
+ * Every solve adds to statistics of how well each technique paid off on similar states,
+ * but techniques are chosen by a snapshot of them taken by freezeStatistics,
+ * so solves between two snapshots do not depend on each other.
+ * With early rejection allowed, boards expected to cost more to finish than a fresh candidate
+ * are given up, judged by the same snapshot.
+ * Cost is counted in squares and constraints visited rather than time,
+ * so a sequence of solves always goes the same way
+ */
+public class AdaptiveSolver {
+    private final static int SINGLE_POINT = 0;
+    private final static int BATCHED_PROBE = 1;
+    private final static int SUBSET = 2;
+    private final static int ELIMINATION = 3;
+    private final static int TECHNIQUE_NUMBER = 4;
+    // assumed work per solved square of a technique before it has been tried on a state,
+    // as measured over expert boards, so a cheap technique is not left untried
+    private final static long[] PRIOR_WORK = {36, 4, 40, 100};
+
+    private final static int DENSITY_BUCKETS = 4;
+    private final static int FRONTIER_BUCKETS = 3;
+    private final static int PROGRESS_BUCKETS = 4;
+    private final static int STATE_NUMBER = DENSITY_BUCKETS * FRONTIER_BUCKETS * PROGRESS_BUCKETS;
+
+    private final static int WARM_UP_SOLVES = 200;
+    private final static int MIN_STATE_VISITS = 30;
+    // one solve out of this many is never rejected early to keep statistics fresh
+    private final static int EXPLORATION_INTERVAL = 16;
+    // a board is given up when the work left to finish it is expected to be this many times
+    // what its chance of being accepted is worth in work of fresh candidates
+    private final static double REJECTION_FACTOR = 1.5;
+
+    /**
+     * Statistics of finished solves
+     */
+    private static class Statistics {
+        // per state and technique
+        private final long[][] tries = new long[STATE_NUMBER][TECHNIQUE_NUMBER];
+        private final long[][] solvedSquares = new long[STATE_NUMBER][TECHNIQUE_NUMBER];
+        private final long[][] spentWork = new long[STATE_NUMBER][TECHNIQUE_NUMBER];
+        // solves passing through each state and how many of them were solvable
+        private final long[] stateVisits = new long[STATE_NUMBER];
+        private final long[] stateAccepts = new long[STATE_NUMBER];
+        // work from reaching each state to the end of the solve, summed over the solves
+        private final long[] stateRemainingWork = new long[STATE_NUMBER];
+
+        private long solveNumber;
+        private long acceptedNumber;
+        private long totalWork;
+
+        private Statistics copy() {
+            Statistics statistics = new Statistics();
+            for (int state = 0; state < STATE_NUMBER; state++) {
+                System.arraycopy(tries[state], 0, statistics.tries[state], 0, TECHNIQUE_NUMBER);
+                System.arraycopy(solvedSquares[state], 0, statistics.solvedSquares[state], 0, TECHNIQUE_NUMBER);
+                System.arraycopy(spentWork[state], 0, statistics.spentWork[state], 0, TECHNIQUE_NUMBER);
+            }
+            System.arraycopy(stateVisits, 0, statistics.stateVisits, 0, STATE_NUMBER);
+            System.arraycopy(stateAccepts, 0, statistics.stateAccepts, 0, STATE_NUMBER);
+            System.arraycopy(stateRemainingWork, 0, statistics.stateRemainingWork, 0, STATE_NUMBER);
+            statistics.solveNumber = solveNumber;
+            statistics.acceptedNumber = acceptedNumber;
+            statistics.totalWork = totalWork;
+            return statistics;
+        }
+    }
+
+    private final SPwCSPSolver solver = SPwCSPSolver.getSolver();
+
+    // updated by every solve
+    private Statistics learned = new Statistics();
+    // what techniques are chosen and boards rejected by
+    private Statistics frozen = new Statistics();
+
+    private long attemptNumber;
+    private long earlyRejectionNumber;
+    private boolean earlyRejection = false;
+
+    private AdaptiveSolver() {}
+
+    public static AdaptiveSolver getSolver() {
+        return new AdaptiveSolver();
+    }
+
+    /**
+     * Take a snapshot of the statistics learned so far and choose techniques by it
+     * until the next call, so that which of the boards solved meanwhile are accepted
+     * does not depend on the order they are solved in
+     */
+    public void freezeStatistics() {
+        frozen = learned.copy();
+    }
+
+    /**
+     * Allow giving up boards which are unlikely to be worth finishing
+     * Only for generation, since solvable boards may be rejected too.
+     * Whether a board is rejected then depends on the solves before the snapshot
+     * @param enabled whether early rejection is allowed
+     */
+    public void setEarlyRejection(boolean enabled) {
+        earlyRejection = enabled;
+    }
+
+    public long getEarlyRejectionNumber() {
+        return earlyRejectionNumber;
+    }
+
+    public long getSolveNumber() {
+        return learned.solveNumber;
+    }
+
+    /**
+     * Check whether the board is solvable by the techniques of SPwCSPSolver
+     * @param mineBoard the board to be solve
+     * @param clickedSquareIndex the index of first clicked square
+     * @return whether the board is solvable, false if it is rejected early
+     */
+    public boolean isSolvable(MineBoard mineBoard, int clickedSquareIndex) {
+        return solve(mineBoard, clickedSquareIndex, SolveBudget.UNLIMITED) == SolveResult.SOLVABLE;
+    }
+
+    /**
+     * Check whether the board is solvable within a budget
+     * @param mineBoard the board to be solve
+     * @param clickedSquareIndex the index of first clicked square
+     * @param budget limits on the solve
+     * @return the result, BUDGET_EXHAUSTED if the solve was given up or rejected early
+     */
+    public SolveResult solve(MineBoard mineBoard, int clickedSquareIndex, SolveBudget budget) {
+        int squareNumber = mineBoard.getRow() * mineBoard.getColumn();
+        boolean exploring = attemptNumber++ % EXPLORATION_INTERVAL == 0;
+        // work done when each state was reached first, -1 if it was not
+        long[] entryWork = new long[STATE_NUMBER];
+        Arrays.fill(entryWork, -1);
+        // progress at which each technique last found nothing
+        int[] failedProgress = {-1, -1, -1, -1};
+        solver.start(mineBoard, clickedSquareIndex, budget);
+
+        while (!solver.isSolved()) {
+            if (solver.isBudgetExhausted()) {
+                record(entryWork, false);
+                return SolveResult.BUDGET_EXHAUSTED;
+            }
+            int state = getState(squareNumber);
+            if (entryWork[state] < 0) {
+                entryWork[state] = solver.getWorkNumber();
+            }
+            if (earlyRejection && !exploring && shouldReject(state)) {
+                earlyRejectionNumber++;
+                // the board was not shown to be unsolvable
+                return SolveResult.BUDGET_EXHAUSTED;
+            }
+            int progress = solver.getProgress();
+            int technique = chooseTechnique(state, progress, failedProgress);
+            if (technique < 0) {
+                // every technique fails on this state
+                record(entryWork, false);
+                return SolveResult.UNSOLVABLE;
+            }
+            long workNumber = solver.getWorkNumber();
+            boolean mapUpdated = run(technique);
+            learned.tries[state][technique]++;
+            learned.spentWork[state][technique] += solver.getWorkNumber() - workNumber;
+            learned.solvedSquares[state][technique] += solver.getProgress() - progress;
+            if (!mapUpdated) {
+                failedProgress[technique] = progress;
+            }
+        }
+        record(entryWork, true);
+        return SolveResult.SOLVABLE;
+    }
+
+    private boolean run(int technique) {
+        switch (technique) {
+            case(SINGLE_POINT) :
+                return solver.singlePointStep();
+            case(BATCHED_PROBE) :
+                return solver.batchedProbeStep();
+            case(SUBSET) :
+                return solver.subsetStep();
+            default :
+                return solver.eliminationStep();
+        }
+    }
+
+    /**
+     * Pick the technique solving most squares per work on the state
+     * among those which have not failed since the last progress
+     * @return the technique or -1 if all of them failed
+     */
+    private int chooseTechnique(int state, int progress, int[] failedProgress) {
+        int bestTechnique = -1;
+        double bestScore = -1;
+        for (int technique = 0; technique < TECHNIQUE_NUMBER; technique++) {
+            if (failedProgress[technique] == progress) {
+                continue;
+            }
+            double score = (frozen.solvedSquares[state][technique] + 1.0)
+                / (frozen.spentWork[state][technique] + PRIOR_WORK[technique]);
+            if (score > bestScore) {
+                bestScore = score;
+                bestTechnique = technique;
+            }
+        }
+        return bestTechnique;
+    }
+
+    /**
+     * Bucket the remaining mine density, frontier size and progress of the solve
+     */
+    private int getState(int squareNumber) {
+        int coveredNumber = solver.getCoveredNumber();
+        double density = coveredNumber == 0 ? 0 : (double) solver.getRestMineNumber() / coveredNumber;
+        int densityBucket = Math.min(DENSITY_BUCKETS - 1, (int) (density * 10));
+        int frontierSize = solver.getFrontierSize();
+        int frontierBucket = frontierSize < 8 ? 0 : frontierSize < 32 ? 1 : 2;
+        int progressBucket = Math.min(PROGRESS_BUCKETS - 1, solver.getProgress() * PROGRESS_BUCKETS / squareNumber);
+        return (densityBucket * FRONTIER_BUCKETS + frontierBucket) * PROGRESS_BUCKETS + progressBucket;
+    }
+
+    /**
+     * Compare the expected work of finishing this board with what it saves if it is accepted,
+     * the work per accepted board of fresh candidates
+     * Both are learned for the state, so on the first state of a solve they are even
+     */
+    private boolean shouldReject(int state) {
+        if (frozen.solveNumber < WARM_UP_SOLVES || frozen.stateVisits[state] < MIN_STATE_VISITS) {
+            return false;
+        }
+        double stateAcceptance = (frozen.stateAccepts[state] + 1.0) / (frozen.stateVisits[state] + 2.0);
+        double acceptance = (frozen.acceptedNumber + 1.0) / (frozen.solveNumber + 2.0);
+        double freshCost = (double) frozen.totalWork / frozen.solveNumber / acceptance;
+        double remainingCost = (double) frozen.stateRemainingWork[state] / frozen.stateVisits[state];
+        return remainingCost > REJECTION_FACTOR * stateAcceptance * freshCost;
+    }
+
+    private void record(long[] entryWork, boolean accepted) {
+        learned.solveNumber++;
+        learned.totalWork += solver.getWorkNumber();
+        if (accepted) {
+            learned.acceptedNumber++;
+        }
+        for (int state = 0; state < STATE_NUMBER; state++) {
+            if (entryWork[state] >= 0) {
+                learned.stateVisits[state]++;
+                learned.stateRemainingWork[state] += solver.getWorkNumber() - entryWork[state];
+                if (accepted) {
+                    learned.stateAccepts[state]++;
+                }
+            }
+        }
+    }
+}
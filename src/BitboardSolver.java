@@ -0,0 +1,254 @@
+import java.util.*;
+
+/**
+ * Minesweeper solver by Single Point Algorithm on bitboards
+ * Each row is stored as one long word, so the All-Free-Neighbor
+ * and All-Mine-Neighbor rules are applied to a whole row at a time
+ * Accepts exactly the same boards as SinglePointSolver, which SolverFuzzer checks on random boards
+ */
+public class BitboardSolver {
+    public final static int MAX_COLUMN = 64;
+
+    private int gridRow, gridColumn;
+    private long rowMask;
+
+    // bit planes, bit col of word row stands for square (row, col)
+    private long[] mines;
+    private long[] revealed;
+    private long[] flagged;
+    // revealed squares whose numbers may be used as constraints
+    private long[] informative;
+    // bit-sliced neighbor mine counts, mineCounts[k] holds bit k of the counts
+    private long[][] mineCounts;
+
+    // working planes reused between sweeps
+    private long[][] flagCounts;
+    private long[][] unknownCounts;
+    private long[] afn;
+    private long[] amn;
+    private long[] unknown;
+
+    private BitboardSolver() {}
+
+    public static BitboardSolver getSolver() {
+        return new BitboardSolver();
+    }
+
+    /**
+     * Check whether the board is solvable by Single Point method
+     * @param mineBoard the board to be solve
+     * @param clickedSquareIndex the index of first clicked square
+     * @return whether the board is solvable
+     */
+    public boolean isSolvable(MineBoard mineBoard, int clickedSquareIndex) {
+        int row = mineBoard.getRow();
+        int col = mineBoard.getColumn();
+        long[] minePlane = new long[row];
+        for (int i = 0; i < row; i++) {
+            for (int j = 0; j < col; j++) {
+                if (mineBoard.getSquare(i, j).isMine()) {
+                    minePlane[i] |= 1L << j;
+                }
+            }
+        }
+        load(row, col, minePlane);
+        return solve(clickedSquareIndex / col, clickedSquareIndex % col);
+    }
+
+    /**
+     * Load a mine layout and clear all revealed and flagged squares
+     * @param row number of rows
+     * @param col number of columns, at most MAX_COLUMN
+     * @param minePlane one word per row with a bit set on every mine
+     */
+    public void load(int row, int col, long[] minePlane) {
+        if (col > MAX_COLUMN) {
+            throw new IllegalArgumentException("bitboard supports at most " + MAX_COLUMN + " columns");
+        }
+        gridRow = row;
+        gridColumn = col;
+        rowMask = col == 64 ? -1L : (1L << col) - 1;
+        mines = minePlane;
+        revealed = new long[row];
+        flagged = new long[row];
+        informative = new long[row];
+        Arrays.fill(informative, rowMask);
+        mineCounts = new long[4][row];
+        countNeighbors(mines, mineCounts);
+    }
+
+    /**
+     * Reveal the clicked square and apply single point rules until nothing changes
+     * @param clickedRow row of the first clicked square
+     * @param clickedCol column of the first clicked square
+     * @return whether the board is solved without guessing
+     */
+    public boolean solve(int clickedRow, int clickedCol) {
+        revealed[clickedRow] |= 1L << clickedCol;
+        int mineNumber = bitCount(mines);
+        int safeNumber = gridRow * gridColumn - mineNumber;
+
+        while (!(bitCount(flagged) == mineNumber || bitCount(revealed) == safeNumber)) {
+            if (!applyRules()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply single point rules from partially known squares until nothing changes
+     * Squares outside the informative plane are treated as known but give no numbers,
+     * which allows solving a window cut out of a larger board
+     * @param revealedPlane squares known to be safe
+     * @param flaggedPlane squares known to be mines
+     * @param informativePlane revealed squares whose numbers can be used
+     * @param targetPlane squares which have to be solved
+     * @return whether every square in the target plane is revealed or flagged
+     */
+    public boolean solve(long[] revealedPlane, long[] flaggedPlane, long[] informativePlane, long[] targetPlane) {
+        for (int row = 0; row < gridRow; row++) {
+            revealed[row] = revealedPlane[row];
+            flagged[row] = flaggedPlane[row];
+            informative[row] = informativePlane[row];
+        }
+        while (true) {
+            boolean targetSolved = true;
+            for (int row = 0; row < gridRow; row++) {
+                if ((targetPlane[row] & ~(revealed[row] | flagged[row])) != 0) {
+                    targetSolved = false;
+                    break;
+                }
+            }
+            if (targetSolved) {
+                return true;
+            }
+            if (!applyRules()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Get squares revealed so far, the plane is overwritten by the next load or solve
+     */
+    public long[] getRevealedPlane() {
+        return revealed;
+    }
+
+    /**
+     * Get squares flagged so far, the plane is overwritten by the next load or solve
+     */
+    public long[] getFlaggedPlane() {
+        return flagged;
+    }
+
+    /**
+     * Apply All-Free-Neighbor and All-Mine-Neighbor rules to every revealed square once
+     * @return whether any square is probed or flagged
+     */
+    private boolean applyRules() {
+        if (afn == null || afn.length != gridRow) {
+            flagCounts = new long[4][gridRow];
+            unknownCounts = new long[4][gridRow];
+            afn = new long[gridRow];
+            amn = new long[gridRow];
+            unknown = new long[gridRow];
+        }
+        for (int row = 0; row < gridRow; row++) {
+            unknown[row] = ~revealed[row] & rowMask;
+        }
+        countNeighbors(flagged, flagCounts);
+        countNeighbors(unknown, unknownCounts);
+        for (int row = 0; row < gridRow; row++) {
+            // numbered squares whose mines are all flagged or all still unknown
+            long numbered = revealed[row] & informative[row];
+            afn[row] = numbered & equal(mineCounts, flagCounts, row);
+            amn[row] = numbered & equal(mineCounts, unknownCounts, row);
+        }
+        boolean mapUpdated = false;
+        for (int row = 0; row < gridRow; row++) {
+            long covered = ~(revealed[row] | flagged[row]) & rowMask;
+            long toProbe = spread(afn, row) & covered;
+            long toFlag = spread(amn, row) & covered & ~toProbe;
+            if ((toProbe | toFlag) != 0) {
+                revealed[row] |= toProbe;
+                flagged[row] |= toFlag;
+                mapUpdated = true;
+            }
+        }
+        return mapUpdated;
+    }
+
+    /**
+     * Count set neighbors of every square of a plane into bit-sliced counters
+     * @param plane the plane to be counted
+     * @param counts counters to be overwritten, counts[k][row] holds bit k
+     */
+    private void countNeighbors(long[] plane, long[][] counts) {
+        for (int row = 0; row < gridRow; row++) {
+            long c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+            for (int i = -1; i < 2; i++) {
+                int r = row + i;
+                if (r < 0 || r >= gridRow) {
+                    continue;
+                }
+                long word = plane[r];
+                for (int j = 0; j < 3; j++) {
+                    long addend;
+                    if (j == 0) {
+                        addend = (word << 1) & rowMask;
+                    } else if (j == 1) {
+                        if (i == 0) continue;
+                        addend = word;
+                    } else {
+                        addend = word >>> 1;
+                    }
+                    // ripple-carry add of one bit to the 4-bit counters
+                    long carry = c0 & addend;
+                    c0 ^= addend;
+                    long next = c1 & carry;
+                    c1 ^= carry;
+                    carry = c2 & next;
+                    c2 ^= next;
+                    c3 ^= carry;
+                }
+            }
+            counts[0][row] = c0;
+            counts[1][row] = c1;
+            counts[2][row] = c2;
+            counts[3][row] = c3;
+        }
+    }
+
+    /**
+     * Compare two bit-sliced counters of a row
+     * @return bits set where both counters hold the same value
+     */
+    private long equal(long[][] a, long[][] b, int row) {
+        return ~((a[0][row] ^ b[0][row]) | (a[1][row] ^ b[1][row])
+            | (a[2][row] ^ b[2][row]) | (a[3][row] ^ b[3][row])) & rowMask;
+    }
+
+    /**
+     * Get squares adjacent to any set square of the plane on a row
+     * @param plane source squares
+     * @param row the row to be computed
+     * @return neighbors on the row
+     */
+    private long spread(long[] plane, int row) {
+        long around = 0;
+        for (int r = Math.max(0, row - 1); r <= Math.min(gridRow - 1, row + 1); r++) {
+            around |= plane[r];
+        }
+        return (around | (around << 1) | (around >>> 1)) & rowMask;
+    }
+
+    private int bitCount(long[] plane) {
+        int count = 0;
+        for (long word : plane) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
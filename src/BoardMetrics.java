@@ -0,0 +1,139 @@
+/**
+ * Standard metrics of a board for ranking and filtering generated boards
+ *   3BV: least number of clicks to clear the board without flagging
+ *   openings: connected areas of squares without mines around
+ *   islands: connected areas of numbers not next to any opening
+ */
+public class BoardMetrics {
+    private final static byte KIND_NONE = 0;
+    private final static byte KIND_OPENING = 1;
+    private final static byte KIND_ISOLATED = 2;
+
+    private final int threeBV;
+    private final int openingNumber;
+    private final int islandNumber;
+
+    public BoardMetrics(int threeBV, int openingNumber, int islandNumber) {
+        this.threeBV = threeBV;
+        this.openingNumber = openingNumber;
+        this.islandNumber = islandNumber;
+    }
+
+    public int getThreeBV() {
+        return threeBV;
+    }
+
+    public int getOpeningNumber() {
+        return openingNumber;
+    }
+
+    public int getIslandNumber() {
+        return islandNumber;
+    }
+
+    /**
+     * Return whether every metric lies between the ones of minimum and maximum, both inclusive
+     */
+    public boolean isWithin(BoardMetrics minimum, BoardMetrics maximum) {
+        return threeBV >= minimum.threeBV && threeBV <= maximum.threeBV
+            && openingNumber >= minimum.openingNumber && openingNumber <= maximum.openingNumber
+            && islandNumber >= minimum.islandNumber && islandNumber <= maximum.islandNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "3BV " + threeBV + ", openings " + openingNumber + ", islands " + islandNumber;
+    }
+
+    /**
+     * Measure a board in one pass over its squares
+     * Squares are joined by union-find with the neighbors already passed,
+     * so every join of two areas lowers the number of areas by one
+     * @param row number of rows
+     * @param column number of columns
+     * @param mines mines[row * column + col] is true on mines
+     * @param mineCounts number of mines around each square
+     * @return the metrics
+     */
+    public static BoardMetrics measure(int row, int column, boolean[] mines, byte[] mineCounts) {
+        int[] parents = new int[row * column];
+        // kind of each passed square, areas only join squares of the same kind
+        byte[] kinds = new byte[row * column];
+        int openingNumber = 0;
+        int isolatedNumber = 0;
+        int islandNumber = 0;
+        for (int r = 0; r < row; r++) {
+            for (int c = 0; c < column; c++) {
+                int index = r * column + c;
+                parents[index] = index;
+                if (mines[index]) {
+                    kinds[index] = KIND_NONE;
+                    continue;
+                }
+                if (mineCounts[index] == 0) {
+                    kinds[index] = KIND_OPENING;
+                    openingNumber++;
+                } else if (!nextToOpening(row, column, mines, mineCounts, r, c)) {
+                    kinds[index] = KIND_ISOLATED;
+                    isolatedNumber++;
+                    islandNumber++;
+                } else {
+                    // cleared together with the opening
+                    kinds[index] = KIND_NONE;
+                    continue;
+                }
+                // west, north-west, north and north-east were passed already
+                int joinedNumber = 0;
+                if (c > 0 && kinds[index - 1] == kinds[index] && union(parents, index, index - 1)) {
+                    joinedNumber++;
+                }
+                for (int dc = -1; dc <= 1 && r > 0; dc++) {
+                    int neighbor = index - column + dc;
+                    if (c + dc >= 0 && c + dc < column && kinds[neighbor] == kinds[index]
+                        && union(parents, index, neighbor)) {
+                        joinedNumber++;
+                    }
+                }
+                if (kinds[index] == KIND_OPENING) {
+                    openingNumber -= joinedNumber;
+                } else {
+                    islandNumber -= joinedNumber;
+                }
+            }
+        }
+        return new BoardMetrics(openingNumber + isolatedNumber, openingNumber, islandNumber);
+    }
+
+    private static boolean nextToOpening(int row, int column, boolean[] mines, byte[] mineCounts, int r, int c) {
+        for (int nr = Math.max(0, r - 1); nr <= Math.min(row - 1, r + 1); nr++) {
+            for (int nc = Math.max(0, c - 1); nc <= Math.min(column - 1, c + 1); nc++) {
+                int index = nr * column + nc;
+                if (!mines[index] && mineCounts[index] == 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int find(int[] parents, int index) {
+        while (parents[index] != index) {
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    /**
+     * @return false if both squares are already in the same area
+     */
+    private static boolean union(int[] parents, int index1, int index2) {
+        int root1 = find(parents, index1);
+        int root2 = find(parents, index2);
+        if (root1 == root2) {
+            return false;
+        }
+        parents[root1] = root2;
+        return true;
+    }
+}
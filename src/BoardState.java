@@ -0,0 +1,172 @@
+import java.util.*;
+
+/**
+ * A class for storing the state of every square in copy-on-write chunks
+ * Taking a snapshot costs constant time, later writes only copy the chunks they touch
+ * and restoring a snapshot only visits the chunks that differ
+ */
+public class BoardState {
+    public final static byte MINE = 1;
+    public final static byte PROBED = 2;
+    public final static byte FLAGGED = 4;
+
+    private final static int CHUNK_SHIFT = 6;
+    private final static int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final int squareNumber;
+    private byte[][] chunks;
+    // epoch in which each chunk was copied, a chunk is writable only in its own epoch
+    private int[] chunkEpochs;
+    private int epoch;
+    // whether the chunk table itself is referenced by a snapshot
+    private boolean chunkTableShared;
+    // squares changed since the changes were drained last time
+    private final BitSet changedSquares = new BitSet();
+
+    /**
+     * An immutable view of a board state
+     */
+    public static class Snapshot {
+        private final byte[][] chunks;
+        private final int squareNumber;
+
+        private Snapshot(byte[][] chunks, int squareNumber) {
+            this.chunks = chunks;
+            this.squareNumber = squareNumber;
+        }
+
+        public byte get(int index) {
+            return chunks[index >>> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+        }
+
+        public int size() {
+            return squareNumber;
+        }
+    }
+
+    public BoardState(int squareNumber) {
+        this.squareNumber = squareNumber;
+        clear();
+    }
+
+    /**
+     * Create a state branching from a snapshot
+     * The snapshot is not affected by writes to the new state
+     * @param snapshot the snapshot to branch from
+     */
+    public BoardState(Snapshot snapshot) {
+        squareNumber = snapshot.squareNumber;
+        chunks = snapshot.chunks;
+        chunkEpochs = new int[chunks.length];
+        epoch = 1;
+        chunkTableShared = true;
+    }
+
+    /**
+     * Reset every square to covered, unflagged and without mine
+     */
+    public void clear() {
+        chunks = new byte[(squareNumber + CHUNK_SIZE - 1) >>> CHUNK_SHIFT][CHUNK_SIZE];
+        chunkEpochs = new int[chunks.length];
+        epoch = 0;
+        chunkTableShared = false;
+        changedSquares.set(0, squareNumber);
+    }
+
+    public int size() {
+        return squareNumber;
+    }
+
+    public byte get(int index) {
+        return chunks[index >>> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+    }
+
+    public boolean has(int index, byte property) {
+        return (get(index) & property) != 0;
+    }
+
+    public void set(int index, byte state) {
+        int chunkIndex = index >>> CHUNK_SHIFT;
+        int offset = index & (CHUNK_SIZE - 1);
+        if (chunks[chunkIndex][offset] == state) {
+            return;
+        }
+        if (chunkTableShared) {
+            chunks = chunks.clone();
+            chunkTableShared = false;
+        }
+        if (chunkEpochs[chunkIndex] != epoch) {
+            // the chunk may be shared with a snapshot, copy before writing
+            chunks[chunkIndex] = chunks[chunkIndex].clone();
+            chunkEpochs[chunkIndex] = epoch;
+        }
+        chunks[chunkIndex][offset] = state;
+        changedSquares.set(index);
+    }
+
+    public void add(int index, byte property) {
+        set(index, (byte) (get(index) | property));
+    }
+
+    public void remove(int index, byte property) {
+        set(index, (byte) (get(index) & ~property));
+    }
+
+    /**
+     * Get squares changed since last call in ascending order
+     * @return indices of the changed squares
+     */
+    public int[] drainChanges() {
+        int[] indices = changedSquares.stream().toArray();
+        changedSquares.clear();
+        return indices;
+    }
+
+    /**
+     * Take a snapshot of current state in constant time
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        chunkTableShared = true;
+        epoch++;
+        return new Snapshot(chunks, squareNumber);
+    }
+
+    /**
+     * Return whether nothing has been written since the snapshot was taken or restored
+     * @param snapshot the snapshot to be compared
+     * @return true if current state is identical to the snapshot
+     */
+    public boolean isUnchangedSince(Snapshot snapshot) {
+        return chunks == snapshot.chunks;
+    }
+
+    /**
+     * Restore a snapshot
+     * @param snapshot the snapshot to be restored
+     * @return indices of squares whose state changed
+     */
+    public ArrayList<Integer> restore(Snapshot snapshot) {
+        ArrayList<Integer> changedIndices = new ArrayList<Integer>();
+        byte[][] oldChunks = chunks;
+        chunks = snapshot.chunks;
+        chunkTableShared = true;
+        epoch++;
+        for (int chunkIndex = 0; chunkIndex < chunks.length; chunkIndex++) {
+            byte[] oldChunk = oldChunks[chunkIndex];
+            byte[] newChunk = chunks[chunkIndex];
+            if (oldChunk == newChunk) {
+                // chunks never written since they were shared
+                continue;
+            }
+            int base = chunkIndex << CHUNK_SHIFT;
+            for (int offset = 0; offset < CHUNK_SIZE && base + offset < squareNumber; offset++) {
+                if (oldChunk[offset] != newChunk[offset]) {
+                    changedIndices.add(base + offset);
+                    changedSquares.set(base + offset);
+                }
+            }
+        }
+        return changedIndices;
+    }
+}
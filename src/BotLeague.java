@@ -0,0 +1,469 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Headless league of bots playing random boards which may need guessing
+ * A bot is a solver deducing moves from the probed squares and a policy guessing when it is stuck.
+ * Every bot plays the same boards from the same first click, in parallel, and the league reports
+ * win rate, moves per game, games per second and time spent deciding each move.
+ * Games are played on ConcurrentMineBoard, which holds no Swing component,
+ * so worker threads never touch squares owned by the event dispatch thread
+ *
+ * Usage: java BotLeague [games] [threads] [row] [column] [mines] [seed]
+ */
+public class BotLeague {
+    /**
+     * A way to choose a covered square when the solver finds no safe one
+     */
+    public interface GuessPolicy {
+        /**
+         * @param mineBoard the board in play
+         * @param random source of randomness for the game
+         * @return index of a covered and unflagged square
+         */
+        int guess(ConcurrentMineBoard mineBoard, SplittableRandom random);
+    }
+
+    /**
+     * Guess any covered square
+     */
+    public final static GuessPolicy RANDOM_GUESS = (mineBoard, random) -> {
+        ArrayList<Integer> coveredSquares = getCoveredSquares(mineBoard);
+        return coveredSquares.get(random.nextInt(coveredSquares.size()));
+    };
+
+    /**
+     * Guess the covered square least likely to be a mine by the numbers next to it alone,
+     * counting squares away from numbers by the density of the rest mines
+     */
+    public final static GuessPolicy LOCAL_PROBABILITY_GUESS = (mineBoard, random) -> {
+        ArrayList<Integer> coveredSquares = getCoveredSquares(mineBoard);
+        double restDensity = (double) (mineBoard.getMineNumber() - mineBoard.getFlaggedSquareNumber()) / coveredSquares.size();
+        int bestIndex = -1;
+        double bestRisk = 2;
+        int tieNumber = 0;
+        for (int index : coveredSquares) {
+            double risk = -1;
+            for (int neighbor : getNeighbors(mineBoard, index)) {
+                if ((mineBoard.getSquareState(neighbor) & BoardState.PROBED) != 0) {
+                    double neighborRisk = (double) (mineBoard.getNumber(neighbor) - countNeighbors(mineBoard, neighbor, BoardState.FLAGGED))
+                        / countCoveredNeighbors(mineBoard, neighbor);
+                    risk = Math.max(risk, neighborRisk);
+                }
+            }
+            if (risk < 0) {
+                risk = restDensity;
+            }
+            // break ties uniformly by reservoir sampling so that bots do not keep guessing the same corner
+            if (risk < bestRisk) {
+                bestRisk = risk;
+                bestIndex = index;
+                tieNumber = 1;
+            } else if (risk == bestRisk && random.nextInt(++tieNumber) == 0) {
+                bestIndex = index;
+            }
+        }
+        return bestIndex;
+    };
+
+    // single point deductions on bitboards, the same deductions over the two sets of DSSPSolver,
+    // and Gaussian elimination of all constraints
+    private final static String[] SOLVER_NAMES = {"SinglePoint", "DSSP", "Elimination"};
+    private final static String[] POLICY_NAMES = {"random", "local"};
+    private final static GuessPolicy[] POLICIES = {RANDOM_GUESS, LOCAL_PROBABILITY_GUESS};
+
+    private final int gridRow;
+    private final int gridColumn;
+    private final int mineNumber;
+    // statistics of each bot, indexed by solver * POLICIES.length + policy
+    private final AtomicLongArray gameNumbers;
+    private final AtomicLongArray winNumbers;
+    private final AtomicLongArray moveNumbers;
+    private final AtomicLongArray guessNumbers;
+    private final AtomicLongArray gameNanos;
+    private final AtomicLongArray decisionNanos;
+    private final AtomicLongArray maxDecisionNanos;
+
+    public BotLeague(int row, int column, int mineNumber) {
+        if (column > BitboardSolver.MAX_COLUMN) {
+            throw new IllegalArgumentException("bots play at most " + BitboardSolver.MAX_COLUMN + " columns");
+        }
+        gridRow = row;
+        gridColumn = column;
+        this.mineNumber = mineNumber;
+        int botNumber = SOLVER_NAMES.length * POLICIES.length;
+        gameNumbers = new AtomicLongArray(botNumber);
+        winNumbers = new AtomicLongArray(botNumber);
+        moveNumbers = new AtomicLongArray(botNumber);
+        guessNumbers = new AtomicLongArray(botNumber);
+        gameNanos = new AtomicLongArray(botNumber);
+        decisionNanos = new AtomicLongArray(botNumber);
+        maxDecisionNanos = new AtomicLongArray(botNumber);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int gameNumber = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int threadNumber = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int row = args.length > 2 ? Integer.parseInt(args[2]) : 9;
+        int column = args.length > 3 ? Integer.parseInt(args[3]) : 9;
+        int mineNumber = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+        new BotLeague(row, column, mineNumber).run(gameNumber, threadNumber, seed);
+    }
+
+    /**
+     * Let every bot play the same random games in parallel and print a report
+     */
+    public void run(int gameNumber, int threadNumber, long seed) throws InterruptedException {
+        System.out.printf("%dx%d with %d mines, seed %d%n", gridRow, gridColumn, mineNumber, seed);
+        SplittableRandom seedSource = new SplittableRandom(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(threadNumber);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < gameNumber; i++) {
+            long gameSeed = seedSource.nextLong();
+            executor.execute(() -> {
+                boolean[] mines = placeMines(gameSeed);
+                for (int solver = 0; solver < SOLVER_NAMES.length; solver++) {
+                    for (int policy = 0; policy < POLICIES.length; policy++) {
+                        play(solver, policy, mines, gameSeed);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        int botNumber = SOLVER_NAMES.length * POLICIES.length;
+        System.out.printf("%d games in %.1f s, %.0f games/s for all bots%n",
+            (long) gameNumber * botNumber, seconds, gameNumber * botNumber / seconds);
+        System.out.printf("%-20s %8s %8s %8s %10s %12s %12s%n",
+            "bot", "win", "moves", "guesses", "games/s", "move us", "max move us");
+        for (int bot = 0; bot < botNumber; bot++) {
+            long games = gameNumbers.get(bot);
+            long moves = moveNumbers.get(bot);
+            System.out.printf("%-20s %7.2f%% %8.1f %8.2f %10.0f %12.1f %12.1f%n",
+                SOLVER_NAMES[bot / POLICIES.length] + "/" + POLICY_NAMES[bot % POLICIES.length],
+                100.0 * winNumbers.get(bot) / games,
+                (double) moves / games,
+                (double) guessNumbers.get(bot) / games,
+                // per thread, since threads play games of all bots at once
+                games / (gameNanos.get(bot) / 1e9),
+                decisionNanos.get(bot) / 1e3 / moves,
+                maxDecisionNanos.get(bot) / 1e3);
+        }
+    }
+
+    /**
+     * Place mines away from the first clicked square the same way MineBoard places the first candidate
+     * @param gameSeed seed of the game
+     * @return mines[row * column + col] is true on mines
+     */
+    private boolean[] placeMines(long gameSeed) {
+        SplittableRandom random = new SplittableRandom(gameSeed);
+        boolean[] mines = new boolean[gridRow * gridColumn];
+        int clickedRow = gridRow / 2;
+        int clickedCol = gridColumn / 2;
+        for (int placedMineNum = 0; placedMineNum < mineNumber; ) {
+            int randRow = random.nextInt(gridRow);
+            int randCol = random.nextInt(gridColumn);
+            if (!(randRow >= clickedRow - 1 && randRow <= clickedRow + 1
+                && randCol >= clickedCol - 1 && randCol <= clickedCol + 1)
+                && !mines[randRow * gridColumn + randCol]) {
+                mines[randRow * gridColumn + randCol] = true;
+                placedMineNum++;
+            }
+        }
+        return mines;
+    }
+
+    /**
+     * Play one game with a bot, every probe, flag or probe of neighbors counting as a move
+     */
+    private void play(int solver, int policy, boolean[] mines, long gameSeed) {
+        long gameStart = System.nanoTime();
+        ConcurrentMineBoard mineBoard = new ConcurrentMineBoard(gridRow, gridColumn, mines);
+        BitboardSolver bitboardSolver = null;
+        if (solver == 0) {
+            bitboardSolver = BitboardSolver.getSolver();
+            // the solver only reads numbers of squares revealed to it
+            bitboardSolver.load(gridRow, gridColumn, toPlane(mines));
+        }
+        SplittableRandom random = new SplittableRandom(gameSeed);
+        int bot = solver * POLICIES.length + policy;
+        long moves = 1;
+        long guesses = 0;
+        long decisionTime = 0;
+        long maxDecisionTime = 0;
+        mineBoard.probe(gridRow / 2 * gridColumn + gridColumn / 2);
+        ArrayList<Integer> safeSquares = new ArrayList<Integer>();
+        ArrayList<Integer> mineSquares = new ArrayList<Integer>();
+        while (mineBoard.getStatus() == ConcurrentMineBoard.PLAYING) {
+            long decisionStart = System.nanoTime();
+            if (solver == 0) {
+                deduceSinglePoint(bitboardSolver, mineBoard, safeSquares, mineSquares);
+            } else if (solver == 1) {
+                deduceDoubleSetSinglePoint(mineBoard, safeSquares, mineSquares);
+            } else {
+                deduceByElimination(mineBoard, safeSquares, mineSquares);
+            }
+            settleByMineNumber(mineBoard, safeSquares, mineSquares);
+            int guess = -1;
+            if (safeSquares.isEmpty() && mineSquares.isEmpty()) {
+                guess = POLICIES[policy].guess(mineBoard, random);
+                guesses++;
+            }
+            long decisionEnd = System.nanoTime();
+            decisionTime += decisionEnd - decisionStart;
+            maxDecisionTime = Math.max(maxDecisionTime, decisionEnd - decisionStart);
+            if (guess >= 0) {
+                mineBoard.probe(guess);
+                moves++;
+                continue;
+            }
+            // flag first so that numbers next to safe squares can be cleared by probing their neighbors
+            for (int index : mineSquares) {
+                mineBoard.flag(index);
+                moves++;
+            }
+            for (int index : safeSquares) {
+                if ((mineBoard.getSquareState(index) & BoardState.PROBED) == 0 && !mineBoard.isClear()) {
+                    int clearedNumber = findClearedNumber(mineBoard, index);
+                    if (clearedNumber >= 0) {
+                        mineBoard.probeNeighbors(clearedNumber);
+                    } else {
+                        mineBoard.probe(index);
+                    }
+                    moves++;
+                }
+            }
+        }
+        gameNumbers.incrementAndGet(bot);
+        if (mineBoard.isClear()) {
+            winNumbers.incrementAndGet(bot);
+        }
+        moveNumbers.addAndGet(bot, moves);
+        guessNumbers.addAndGet(bot, guesses);
+        decisionNanos.addAndGet(bot, decisionTime);
+        long gameMaxDecisionTime = maxDecisionTime;
+        maxDecisionNanos.accumulateAndGet(bot, gameMaxDecisionTime, Math::max);
+        gameNanos.addAndGet(bot, System.nanoTime() - gameStart);
+    }
+
+    /**
+     * Apply single point rules from the probed and flagged squares on bitboards
+     * @param safeSquares filled with covered squares the solver revealed
+     * @param mineSquares filled with covered squares the solver flagged
+     */
+    private void deduceSinglePoint(BitboardSolver bitboardSolver, ConcurrentMineBoard mineBoard,
+        ArrayList<Integer> safeSquares, ArrayList<Integer> mineSquares) {
+        safeSquares.clear();
+        mineSquares.clear();
+        long[] revealedPlane = new long[gridRow];
+        long[] flaggedPlane = new long[gridRow];
+        long[] targetPlane = new long[gridRow];
+        long rowMask = gridColumn == 64 ? -1L : (1L << gridColumn) - 1;
+        for (int row = 0; row < gridRow; row++) {
+            targetPlane[row] = rowMask;
+            for (int col = 0; col < gridColumn; col++) {
+                byte state = mineBoard.getSquareState(row * gridColumn + col);
+                if ((state & BoardState.PROBED) != 0) {
+                    revealedPlane[row] |= 1L << col;
+                } else if ((state & BoardState.FLAGGED) != 0) {
+                    flaggedPlane[row] |= 1L << col;
+                }
+            }
+        }
+        bitboardSolver.solve(revealedPlane, flaggedPlane, revealedPlane, targetPlane);
+        long[] solvedRevealed = bitboardSolver.getRevealedPlane();
+        long[] solvedFlagged = bitboardSolver.getFlaggedPlane();
+        for (int row = 0; row < gridRow; row++) {
+            long newlyRevealed = solvedRevealed[row] & ~revealedPlane[row];
+            long newlyFlagged = solvedFlagged[row] & ~flaggedPlane[row];
+            for (int col = 0; col < gridColumn; col++) {
+                if ((newlyRevealed >>> col & 1) != 0) {
+                    safeSquares.add(row * gridColumn + col);
+                } else if ((newlyFlagged >>> col & 1) != 0) {
+                    mineSquares.add(row * gridColumn + col);
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply single point rules the way DSSPSolver does, keeping a set of safe squares to probe
+     * and a set of questionable numbers checked again whenever one of them is settled.
+     * The safe squares are probed as moves, whose numbers are questionable on the next turn
+     * @param safeSquares filled with the covered squares to probe
+     * @param mineSquares filled with covered squares found to be mines
+     */
+    private void deduceDoubleSetSinglePoint(ConcurrentMineBoard mineBoard,
+        ArrayList<Integer> safeSquares, ArrayList<Integer> mineSquares) {
+        safeSquares.clear();
+        mineSquares.clear();
+        LinkedHashSet<Integer> squaresToProbe = new LinkedHashSet<Integer>();
+        LinkedHashSet<Integer> squaresToFlag = new LinkedHashSet<Integer>();
+        // probed numbers next to covered squares
+        ArrayList<Integer> questionableSquares = new ArrayList<Integer>();
+        for (int index = 0; index < gridRow * gridColumn; index++) {
+            if ((mineBoard.getSquareState(index) & BoardState.PROBED) != 0 && countCoveredNeighbors(mineBoard, index) > 0) {
+                questionableSquares.add(index);
+            }
+        }
+        boolean updated = true;
+        while (updated) {
+            updated = false;
+            for (Iterator<Integer> iterator = questionableSquares.iterator(); iterator.hasNext(); ) {
+                int index = iterator.next();
+                int flagCount = 0;
+                ArrayList<Integer> unknownNeighbors = new ArrayList<Integer>();
+                for (int neighbor : getNeighbors(mineBoard, index)) {
+                    byte state = mineBoard.getSquareState(neighbor);
+                    if ((state & BoardState.FLAGGED) != 0 || squaresToFlag.contains(neighbor)) {
+                        flagCount++;
+                    } else if ((state & BoardState.PROBED) == 0 && !squaresToProbe.contains(neighbor)) {
+                        unknownNeighbors.add(neighbor);
+                    }
+                }
+                int mineCount = mineBoard.getNumber(index);
+                if (unknownNeighbors.isEmpty()) {
+                    iterator.remove();
+                } else if (mineCount == flagCount) {
+                    squaresToProbe.addAll(unknownNeighbors);
+                    iterator.remove();
+                    updated = true;
+                } else if (mineCount == flagCount + unknownNeighbors.size()) {
+                    squaresToFlag.addAll(unknownNeighbors);
+                    iterator.remove();
+                    updated = true;
+                }
+            }
+        }
+        safeSquares.addAll(squaresToProbe);
+        mineSquares.addAll(squaresToFlag);
+    }
+
+    /**
+     * Combine the constraints of all probed numbers by Gaussian elimination
+     * @param safeSquares filled with covered squares fixed as safe
+     * @param mineSquares filled with covered squares fixed as mines
+     */
+    private void deduceByElimination(ConcurrentMineBoard mineBoard,
+        ArrayList<Integer> safeSquares, ArrayList<Integer> mineSquares) {
+        safeSquares.clear();
+        mineSquares.clear();
+        ConstraintMatrix matrix = new ConstraintMatrix();
+        for (int index = 0; index < gridRow * gridColumn; index++) {
+            if ((mineBoard.getSquareState(index) & BoardState.PROBED) == 0) {
+                continue;
+            }
+            ArrayList<Integer> coveredNeighbors = new ArrayList<Integer>();
+            int mines = mineBoard.getNumber(index);
+            for (int neighbor : getNeighbors(mineBoard, index)) {
+                byte state = mineBoard.getSquareState(neighbor);
+                if ((state & BoardState.FLAGGED) != 0) {
+                    mines--;
+                } else if ((state & BoardState.PROBED) == 0) {
+                    coveredNeighbors.add(neighbor);
+                }
+            }
+            if (!coveredNeighbors.isEmpty()) {
+                matrix.addConstraint(coveredNeighbors, mines);
+            }
+        }
+        for (Map.Entry<Integer, Boolean> entry : matrix.solve().entrySet()) {
+            (entry.getValue() ? mineSquares : safeSquares).add(entry.getKey());
+        }
+    }
+
+    /**
+     * Solve the rest covered squares if the mine number leaves them all safe or all mines
+     */
+    private void settleByMineNumber(ConcurrentMineBoard mineBoard,
+        ArrayList<Integer> safeSquares, ArrayList<Integer> mineSquares) {
+        HashSet<Integer> solvedSquares = new HashSet<Integer>(safeSquares);
+        solvedSquares.addAll(mineSquares);
+        ArrayList<Integer> restSquares = new ArrayList<Integer>();
+        for (int index : getCoveredSquares(mineBoard)) {
+            if (!solvedSquares.contains(index)) {
+                restSquares.add(index);
+            }
+        }
+        int restMineNumber = mineNumber - mineBoard.getFlaggedSquareNumber() - mineSquares.size();
+        if (restMineNumber == 0) {
+            safeSquares.addAll(restSquares);
+        } else if (restMineNumber == restSquares.size()) {
+            mineSquares.addAll(restSquares);
+        }
+    }
+
+    /**
+     * Find a probed number next to the square whose mines are all flagged
+     * @return index of the number or -1 if there is none
+     */
+    private int findClearedNumber(ConcurrentMineBoard mineBoard, int index) {
+        for (int neighbor : getNeighbors(mineBoard, index)) {
+            if ((mineBoard.getSquareState(neighbor) & BoardState.PROBED) != 0
+                && mineBoard.getNumber(neighbor) == countNeighbors(mineBoard, neighbor, BoardState.FLAGGED)) {
+                return neighbor;
+            }
+        }
+        return -1;
+    }
+
+    private long[] toPlane(boolean[] mines) {
+        long[] plane = new long[gridRow];
+        for (int index = 0; index < mines.length; index++) {
+            if (mines[index]) {
+                plane[index / gridColumn] |= 1L << (index % gridColumn);
+            }
+        }
+        return plane;
+    }
+
+    private static ArrayList<Integer> getNeighbors(ConcurrentMineBoard mineBoard, int index) {
+        ArrayList<Integer> neighbors = new ArrayList<Integer>(8);
+        int row = index / mineBoard.getColumn();
+        int col = index % mineBoard.getColumn();
+        for (int r = Math.max(0, row - 1); r <= Math.min(mineBoard.getRow() - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(mineBoard.getColumn() - 1, col + 1); c++) {
+                if (r != row || c != col) {
+                    neighbors.add(r * mineBoard.getColumn() + c);
+                }
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * Count neighbor squares having any of the given BoardState bits
+     */
+    private static int countNeighbors(ConcurrentMineBoard mineBoard, int index, byte stateBits) {
+        int count = 0;
+        for (int neighbor : getNeighbors(mineBoard, index)) {
+            if ((mineBoard.getSquareState(neighbor) & stateBits) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countCoveredNeighbors(ConcurrentMineBoard mineBoard, int index) {
+        return getNeighbors(mineBoard, index).size()
+            - countNeighbors(mineBoard, index, (byte) (BoardState.PROBED | BoardState.FLAGGED));
+    }
+
+    /**
+     * @return unprobed and unflagged squares
+     */
+    private static ArrayList<Integer> getCoveredSquares(ConcurrentMineBoard mineBoard) {
+        ArrayList<Integer> coveredSquares = new ArrayList<Integer>();
+        for (int index = 0; index < mineBoard.getRow() * mineBoard.getColumn(); index++) {
+            if ((mineBoard.getSquareState(index) & (BoardState.PROBED | BoardState.FLAGGED)) == 0) {
+                coveredSquares.add(index);
+            }
+        }
+        return coveredSquares;
+    }
+}
@@ -0,0 +1,214 @@
+import java.util.*;
+
+/**
+ * Minesweeper solver by enumerating every mine layout consistent with known squares
+ * A square is solved when it is a mine in all or none of the layouts,
+ * which makes it the strongest solver possible without guessing.
+ * Only meant as a reference for small boards
+ */
+public class BruteForceSolver {
+    // enumeration is exponential in the number of frontier squares
+    public final static int MAX_FRONTIER_SIZE = 30;
+
+    private int gridRow, gridColumn;
+
+    /**
+     * Thrown when more squares than MAX_FRONTIER_SIZE have to be enumerated at once
+     */
+    public static class FrontierTooLargeException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public FrontierTooLargeException() {
+            super("frontier too large to enumerate");
+        }
+    }
+
+    // per enumeration: constraints of numbered squares on frontier squares
+    private int[] frontier;
+    private int[][] squareConstraints;
+    private int[] constraintNeeds;
+    private int[] constraintUnassigned;
+    private int restMineNumber;
+    private int interiorSize;
+    private boolean[] assignment;
+    private boolean[] canBeMine;
+    private boolean[] canBeSafe;
+    private boolean interiorCanHaveMine;
+    private boolean interiorCanHaveSafe;
+
+    private BruteForceSolver() {}
+
+    public static BruteForceSolver getSolver() {
+        return new BruteForceSolver();
+    }
+
+    /**
+     * Check whether the board is solvable without guessing by any method
+     * @param mineBoard the board to be solve
+     * @param clickedSquareIndex the index of first clicked square
+     * @return whether the board is solvable
+     * @throws FrontierTooLargeException if too many squares have to be enumerated at once
+     */
+    public boolean isSolvable(MineBoard mineBoard, int clickedSquareIndex) {
+        gridRow = mineBoard.getRow();
+        gridColumn = mineBoard.getColumn();
+        int squareNumber = gridRow * gridColumn;
+        int mineNumber = mineBoard.getMineNumber();
+        int totalFlagCount = 0;
+        int totalProbedSqauresCount = 1; // include the first clicked one
+
+        while (squareNumber - totalProbedSqauresCount != mineNumber) {
+            // collect numbered squares and covered squares next to them
+            ArrayList<Integer> numberedSquares = new ArrayList<Integer>();
+            LinkedHashMap<Integer, Integer> frontierIndices = new LinkedHashMap<Integer, Integer>();
+            int coveredCount = 0;
+            for (int index = 0; index < squareNumber; index++) {
+                SquareButton square = getSquare(mineBoard, index);
+                if (square.isEnabled()) {
+                    coveredCount++;
+                } else if (!square.isFlagged()) {
+                    boolean hasCoveredNeighbor = false;
+                    for (SquareButton neighbor : mineBoard.getNeighbors(square)) {
+                        if (neighbor.isEnabled()) {
+                            hasCoveredNeighbor = true;
+                            frontierIndices.putIfAbsent(getIndex(neighbor), frontierIndices.size());
+                        }
+                    }
+                    if (hasCoveredNeighbor) {
+                        numberedSquares.add(index);
+                    }
+                }
+            }
+            if (frontierIndices.size() > MAX_FRONTIER_SIZE) {
+                throw new FrontierTooLargeException();
+            }
+            prepare(mineBoard, numberedSquares, frontierIndices, coveredCount, mineNumber - totalFlagCount);
+            enumerate(0, 0);
+
+            boolean mapUpdated = false;
+            for (int i = 0; i < frontier.length; i++) {
+                if (canBeMine[i] != canBeSafe[i]) {
+                    SquareButton square = getSquare(mineBoard, frontier[i]);
+                    square.setEnabled(false);
+                    if (canBeMine[i]) {
+                        square.setFlagged(true);
+                        totalFlagCount++;
+                    } else {
+                        totalProbedSqauresCount++;
+                    }
+                    mapUpdated = true;
+                }
+            }
+            if (interiorSize > 0 && interiorCanHaveMine != interiorCanHaveSafe) {
+                // squares away from the frontier are decided by the total mine number
+                for (int index = 0; index < squareNumber; index++) {
+                    SquareButton square = getSquare(mineBoard, index);
+                    if (square.isEnabled() && !frontierIndices.containsKey(index)) {
+                        square.setEnabled(false);
+                        if (interiorCanHaveMine) {
+                            square.setFlagged(true);
+                            totalFlagCount++;
+                        } else {
+                            totalProbedSqauresCount++;
+                        }
+                    }
+                }
+                mapUpdated = true;
+            }
+            if (!mapUpdated) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void prepare(MineBoard mineBoard, ArrayList<Integer> numberedSquares,
+            LinkedHashMap<Integer, Integer> frontierIndices, int coveredCount, int restMines) {
+        int frontierSize = frontierIndices.size();
+        frontier = new int[frontierSize];
+        for (Map.Entry<Integer, Integer> entry : frontierIndices.entrySet()) {
+            frontier[entry.getValue()] = entry.getKey();
+        }
+        constraintNeeds = new int[numberedSquares.size()];
+        constraintUnassigned = new int[numberedSquares.size()];
+        ArrayList<ArrayList<Integer>> constraintsOfSquare = new ArrayList<ArrayList<Integer>>();
+        for (int i = 0; i < frontierSize; i++) {
+            constraintsOfSquare.add(new ArrayList<Integer>());
+        }
+        for (int c = 0; c < numberedSquares.size(); c++) {
+            SquareButton square = getSquare(mineBoard, numberedSquares.get(c));
+            constraintNeeds[c] = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_MINE)
+                - mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_FLAG);
+            for (SquareButton neighbor : mineBoard.getNeighbors(square)) {
+                if (neighbor.isEnabled()) {
+                    constraintsOfSquare.get(frontierIndices.get(getIndex(neighbor))).add(c);
+                    constraintUnassigned[c]++;
+                }
+            }
+        }
+        squareConstraints = new int[frontierSize][];
+        for (int i = 0; i < frontierSize; i++) {
+            ArrayList<Integer> constraints = constraintsOfSquare.get(i);
+            squareConstraints[i] = new int[constraints.size()];
+            for (int j = 0; j < constraints.size(); j++) {
+                squareConstraints[i][j] = constraints.get(j);
+            }
+        }
+        restMineNumber = restMines;
+        interiorSize = coveredCount - frontierSize;
+        assignment = new boolean[frontierSize];
+        canBeMine = new boolean[frontierSize];
+        canBeSafe = new boolean[frontierSize];
+        interiorCanHaveMine = false;
+        interiorCanHaveSafe = false;
+    }
+
+    /**
+     * Assign frontier squares one by one, pruning as soon as a constraint breaks
+     * @param depth number of assigned frontier squares
+     * @param assignedMines number of mines among them
+     */
+    private void enumerate(int depth, int assignedMines) {
+        if (depth == frontier.length) {
+            int interiorMines = restMineNumber - assignedMines;
+            if (interiorMines < 0 || interiorMines > interiorSize) {
+                return;
+            }
+            for (int i = 0; i < frontier.length; i++) {
+                if (assignment[i]) canBeMine[i] = true;
+                else canBeSafe[i] = true;
+            }
+            if (interiorMines > 0) interiorCanHaveMine = true;
+            if (interiorMines < interiorSize) interiorCanHaveSafe = true;
+            return;
+        }
+        for (int value = 0; value < 2; value++) {
+            boolean mine = value == 1;
+            boolean consistent = true;
+            for (int c : squareConstraints[depth]) {
+                constraintUnassigned[c]--;
+                if (mine) constraintNeeds[c]--;
+                if (constraintNeeds[c] < 0 || constraintNeeds[c] > constraintUnassigned[c]) {
+                    consistent = false;
+                }
+            }
+            if (consistent && assignedMines + value <= restMineNumber) {
+                assignment[depth] = mine;
+                enumerate(depth + 1, assignedMines + value);
+            }
+            for (int c : squareConstraints[depth]) {
+                constraintUnassigned[c]++;
+                if (mine) constraintNeeds[c]++;
+            }
+        }
+    }
+
+    private SquareButton getSquare(MineBoard mineBoard, int index) {
+        return mineBoard.getSquare(index / gridColumn, index % gridColumn);
+    }
+
+    private int getIndex(SquareButton square) {
+        int[] position = square.getPosition();
+        return position[0] * gridColumn + position[1];
+    }
+}
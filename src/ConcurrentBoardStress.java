@@ -0,0 +1,261 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Stress test of ConcurrentMineBoard with many players moving on the same board at once
+ * Every player probes all safe squares in its own order, starting from a square with no mine around
+ * so that flood fills overlap, and flags, unflags and probes neighbors on the way.
+ * After each round the board is checked for
+ *   no double reveal: squares probed by all calls add up to the safe squares
+ *   no lost update: counters agree with the squares and the moves that succeeded
+ *   consistency: the board is cleared, no mine is probed and no square is both probed and flagged
+ * The same moves are then applied under one global lock for comparison
+ *
+ * Usage: java ConcurrentBoardStress [rounds] [threads] [row] [column] [mines] [seed]
+ */
+public class ConcurrentBoardStress {
+    private final static int PROBE = 0;
+    private final static int FLAG = 1;
+    private final static int UNFLAG = 2;
+    private final static int PROBE_NEIGHBORS = 3;
+
+    private final int gridRow;
+    private final int gridColumn;
+    private final int mineNumber;
+    private final int threadNumber;
+    private final ExecutorService executor;
+
+    /**
+     * Moves of a player and what it got from them
+     */
+    private static class Player {
+        private final int[] moveTypes;
+        private final int[] moveSquares;
+        private long probedNumber;
+        private long flagNumber;
+
+        private Player(int[] moveTypes, int[] moveSquares) {
+            this.moveTypes = moveTypes;
+            this.moveSquares = moveSquares;
+        }
+    }
+
+    public ConcurrentBoardStress(int row, int column, int mineNumber, int threadNumber) {
+        gridRow = row;
+        gridColumn = column;
+        this.mineNumber = mineNumber;
+        this.threadNumber = threadNumber;
+        executor = Executors.newFixedThreadPool(threadNumber);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int roundNumber = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int threadNumber = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int row = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int column = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int mineNumber = args.length > 4 ? Integer.parseInt(args[4]) : 1500;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+        ConcurrentBoardStress stress = new ConcurrentBoardStress(row, column, mineNumber, threadNumber);
+        try {
+            stress.run(roundNumber, seed);
+        } finally {
+            stress.executor.shutdown();
+        }
+    }
+
+    /**
+     * Play rounds on random boards, check every round and print a report
+     */
+    public void run(int roundNumber, long seed) throws Exception {
+        System.out.printf("%dx%d with %d mines, %d threads, seed %d%n", gridRow, gridColumn, mineNumber, threadNumber, seed);
+        SplittableRandom random = new SplittableRandom(seed);
+        long moveNumber = 0;
+        long lockFreeNanos = 0;
+        long lockedNanos = 0;
+        int failedRoundNumber = 0;
+        for (int round = 0; round < roundNumber; round++) {
+            boolean[] mines = randomMines(random);
+            Player[] players = createPlayers(mines, random);
+            for (Player player : players) {
+                moveNumber += player.moveTypes.length;
+            }
+
+            ConcurrentMineBoard mineBoard = new ConcurrentMineBoard(gridRow, gridColumn, mines);
+            lockFreeNanos += play(mineBoard, players, false);
+            String failure = check(mineBoard, mines, players);
+            if (failure != null) {
+                failedRoundNumber++;
+                System.out.println("round " + round + ": " + failure);
+            }
+
+            lockedNanos += play(new ConcurrentMineBoard(gridRow, gridColumn, mines), players, true);
+        }
+        System.out.printf("%d moves, lock-free %.1f M moves/s, global lock %.1f M moves/s%n",
+            moveNumber, moveNumber * 1e3 / lockFreeNanos, moveNumber * 1e3 / lockedNanos);
+        System.out.println(failedRoundNumber + " failed rounds");
+    }
+
+    private boolean[] randomMines(SplittableRandom random) {
+        boolean[] mines = new boolean[gridRow * gridColumn];
+        for (int placedMineNumber = 0; placedMineNumber < mineNumber; ) {
+            int index = random.nextInt(mines.length);
+            if (!mines[index]) {
+                mines[index] = true;
+                placedMineNumber++;
+            }
+        }
+        return mines;
+    }
+
+    /**
+     * Give every player all safe squares to probe in its own order, mixed with moves on mines,
+     * all starting from the same square with no mine around
+     */
+    private Player[] createPlayers(boolean[] mines, SplittableRandom random) {
+        ConcurrentMineBoard numbers = new ConcurrentMineBoard(gridRow, gridColumn, mines);
+        int openingSquare = -1;
+        ArrayList<Integer> safeSquares = new ArrayList<Integer>();
+        ArrayList<Integer> mineSquares = new ArrayList<Integer>();
+        for (int index = 0; index < mines.length; index++) {
+            if (mines[index]) {
+                mineSquares.add(index);
+            } else {
+                safeSquares.add(index);
+                if (openingSquare < 0 && numbers.getNumber(index) == 0) {
+                    openingSquare = index;
+                }
+            }
+        }
+        Player[] players = new Player[threadNumber];
+        for (int i = 0; i < threadNumber; i++) {
+            Collections.shuffle(safeSquares, new Random(random.nextLong()));
+            ArrayList<Integer> moveTypes = new ArrayList<Integer>();
+            ArrayList<Integer> moveSquares = new ArrayList<Integer>();
+            if (openingSquare >= 0) {
+                moveTypes.add(PROBE);
+                moveSquares.add(openingSquare);
+            }
+            // every player probes every safe square, so the board is cleared whoever is first
+            for (int safeIndex = 0; safeIndex < safeSquares.size(); ) {
+                int roll = random.nextInt(8);
+                if (roll < 5 || mineSquares.isEmpty()) {
+                    moveTypes.add(PROBE);
+                    moveSquares.add(safeSquares.get(safeIndex++));
+                } else if (roll < 7) {
+                    moveTypes.add(roll == 5 ? FLAG : UNFLAG);
+                    moveSquares.add(mineSquares.get(random.nextInt(mineSquares.size())));
+                } else {
+                    moveTypes.add(PROBE_NEIGHBORS);
+                    moveSquares.add(safeSquares.get(random.nextInt(safeSquares.size())));
+                }
+            }
+            players[i] = new Player(toArray(moveTypes), toArray(moveSquares));
+        }
+        return players;
+    }
+
+    private static int[] toArray(ArrayList<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Let all players move at once
+     * @param locked whether every move takes one global lock
+     * @return nanoseconds from the start to the last player finishing
+     */
+    private long play(ConcurrentMineBoard mineBoard, Player[] players, boolean locked) throws Exception {
+        CountDownLatch ready = new CountDownLatch(players.length);
+        CountDownLatch start = new CountDownLatch(1);
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+        for (Player player : players) {
+            player.probedNumber = 0;
+            player.flagNumber = 0;
+            futures.add(executor.submit(() -> {
+                ready.countDown();
+                start.await();
+                for (int i = 0; i < player.moveTypes.length; i++) {
+                    if (locked) {
+                        synchronized (mineBoard) {
+                            move(mineBoard, player, i);
+                        }
+                    } else {
+                        move(mineBoard, player, i);
+                    }
+                }
+                return null;
+            }));
+        }
+        ready.await();
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private void move(ConcurrentMineBoard mineBoard, Player player, int i) {
+        int index = player.moveSquares[i];
+        switch (player.moveTypes[i]) {
+            case(PROBE) :
+                player.probedNumber += mineBoard.probe(index);
+                break;
+            case(FLAG) :
+                if (mineBoard.flag(index)) player.flagNumber++;
+                break;
+            case(UNFLAG) :
+                if (mineBoard.unflag(index)) player.flagNumber--;
+                break;
+            default :
+                player.probedNumber += mineBoard.probeNeighbors(index);
+                break;
+        }
+    }
+
+    /**
+     * @return description of the first violation or null if none
+     */
+    private String check(ConcurrentMineBoard mineBoard, boolean[] mines, Player[] players) {
+        long probedNumber = 0;
+        long flagNumber = 0;
+        for (Player player : players) {
+            probedNumber += player.probedNumber;
+            flagNumber += player.flagNumber;
+        }
+        int safeNumber = mines.length - mineNumber;
+        int probedSquareNumber = 0;
+        int flaggedSquareNumber = 0;
+        for (int index = 0; index < mines.length; index++) {
+            byte state = mineBoard.getSquareState(index);
+            boolean probed = (state & BoardState.PROBED) != 0;
+            boolean flagged = (state & BoardState.FLAGGED) != 0;
+            if (probed && flagged) {
+                return "square " + index + " is both probed and flagged";
+            }
+            if (probed && mines[index]) {
+                return "mine " + index + " is probed";
+            }
+            if (probed) probedSquareNumber++;
+            if (flagged) flaggedSquareNumber++;
+        }
+        if (probedNumber != safeNumber) {
+            return "moves probed " + probedNumber + " squares for " + safeNumber + " safe squares";
+        }
+        if (probedSquareNumber != safeNumber || mineBoard.getProbedSquareNumber() != safeNumber) {
+            return probedSquareNumber + " squares probed and " + mineBoard.getProbedSquareNumber()
+                + " counted for " + safeNumber + " safe squares";
+        }
+        if (flaggedSquareNumber != flagNumber || mineBoard.getFlaggedSquareNumber() != flagNumber) {
+            return flaggedSquareNumber + " squares flagged and " + mineBoard.getFlaggedSquareNumber()
+                + " counted for " + flagNumber + " flags by moves";
+        }
+        if (!mineBoard.isClear()) {
+            return "board is not cleared";
+        }
+        return null;
+    }
+}
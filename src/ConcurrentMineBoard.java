@@ -0,0 +1,278 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A board shared by players moving at the same time, for co-op play
+ * Every square is one int holding its BoardState bits and the number of mines around it,
+ * and every change of a square is a compare-and-set on it, so no lock is taken.
+ * A square is probed by exactly one successful compare-and-set, so flood fills
+ * started by different players may overlap and each square is still counted once.
+ * The game ends when the counter of safe squares left reaches zero or a mine is probed,
+ * whichever sets the status first
+ */
+public class ConcurrentMineBoard {
+    public final static int PLAYING = 0;
+    public final static int CLEARED = 1;
+    public final static int EXPLODED = 2;
+
+    private final static int STATE_MASK = 0xff;
+    private final static int NUMBER_SHIFT = 8;
+
+    private final int gridRow;
+    private final int gridColumn;
+    private final int mineNumber;
+    // BoardState bits in the low byte, number of mines around above them
+    private final AtomicIntegerArray squares;
+    private final AtomicInteger restSafeSquareNumber;
+    private final AtomicInteger flaggedSquareNumber = new AtomicInteger();
+    private final AtomicInteger status = new AtomicInteger(PLAYING);
+
+    /**
+     * Create a board with no square probed or flagged
+     * @param row number of rows
+     * @param column number of columns
+     * @param mines mines[row * column + col] is true on mines
+     */
+    public ConcurrentMineBoard(int row, int column, boolean[] mines) {
+        gridRow = row;
+        gridColumn = column;
+        squares = new AtomicIntegerArray(row * column);
+        int count = 0;
+        for (int index = 0; index < mines.length; index++) {
+            if (mines[index]) count++;
+        }
+        mineNumber = count;
+        restSafeSquareNumber = new AtomicInteger(row * column - count);
+        for (int index = 0; index < mines.length; index++) {
+            int number = 0;
+            int r0 = index / column;
+            int c0 = index % column;
+            for (int r = Math.max(0, r0 - 1); r <= Math.min(row - 1, r0 + 1); r++) {
+                for (int c = Math.max(0, c0 - 1); c <= Math.min(column - 1, c0 + 1); c++) {
+                    if (mines[r * column + c] && r * column + c != index) {
+                        number++;
+                    }
+                }
+            }
+            squares.set(index, number << NUMBER_SHIFT | (mines[index] ? BoardState.MINE : 0));
+        }
+    }
+
+    /**
+     * Share a generated board, keeping the squares probed and flagged on it so far
+     * @param mineBoard the board, after its first square is probed
+     */
+    public ConcurrentMineBoard(MineBoard mineBoard) {
+        this(mineBoard.getRow(), mineBoard.getColumn(), getMines(mineBoard));
+        for (int index = 0; index < squares.length(); index++) {
+            byte state = mineBoard.getSquareState(index);
+            if ((state & BoardState.PROBED) != 0) {
+                squares.set(index, squares.get(index) | BoardState.PROBED);
+                if ((state & BoardState.MINE) == 0) {
+                    restSafeSquareNumber.decrementAndGet();
+                }
+            } else if ((state & BoardState.FLAGGED) != 0) {
+                squares.set(index, squares.get(index) | BoardState.FLAGGED);
+                flaggedSquareNumber.incrementAndGet();
+            }
+        }
+        if (mineBoard.isFailed()) {
+            status.set(EXPLODED);
+        } else if (mineBoard.isClear()) {
+            status.set(CLEARED);
+        }
+    }
+
+    private static boolean[] getMines(MineBoard mineBoard) {
+        boolean[] mines = new boolean[mineBoard.getRow() * mineBoard.getColumn()];
+        for (int index = 0; index < mines.length; index++) {
+            mines[index] = (mineBoard.getSquareState(index) & BoardState.MINE) != 0;
+        }
+        return mines;
+    }
+
+    public int getRow() {
+        return gridRow;
+    }
+
+    public int getColumn() {
+        return gridColumn;
+    }
+
+    public int getMineNumber() {
+        return mineNumber;
+    }
+
+    public int getProbedSquareNumber() {
+        return gridRow * gridColumn - mineNumber - restSafeSquareNumber.get();
+    }
+
+    public int getFlaggedSquareNumber() {
+        return flaggedSquareNumber.get();
+    }
+
+    /**
+     * @return PLAYING, CLEARED or EXPLODED
+     */
+    public int getStatus() {
+        return status.get();
+    }
+
+    public boolean isClear() {
+        return status.get() == CLEARED;
+    }
+
+    public boolean isFailed() {
+        return status.get() == EXPLODED;
+    }
+
+    /**
+     * Get the state of a square
+     * @param index index of the square
+     * @return BoardState bits of the square
+     */
+    public byte getSquareState(int index) {
+        return (byte) (squares.get(index) & STATE_MASK);
+    }
+
+    /**
+     * Get number of mines around a square
+     * @param index index of the square
+     */
+    public int getNumber(int index) {
+        return squares.get(index) >>> NUMBER_SHIFT;
+    }
+
+    /**
+     * Probe the square, and squares around it if there is no mine around
+     * @param index index of the square
+     * @return number of squares probed by this call, 0 if another player probed it first
+     */
+    public int probe(int index) {
+        if (status.get() != PLAYING || !tryProbe(index)) {
+            return 0;
+        }
+        if (getNumber(index) != 0 || (squares.get(index) & BoardState.MINE) != 0) {
+            return 1;
+        }
+        // flood fill on a stack of squares with no mine around, probed by this call
+        int probedNumber = 1;
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = index;
+        while (top > 0) {
+            int square = stack[--top];
+            int row = square / gridColumn;
+            int col = square % gridColumn;
+            for (int r = Math.max(0, row - 1); r <= Math.min(gridRow - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(gridColumn - 1, col + 1); c++) {
+                    int neighbor = r * gridColumn + c;
+                    // squares probed by another fill are left to it
+                    if (tryProbe(neighbor)) {
+                        probedNumber++;
+                        if (getNumber(neighbor) == 0) {
+                            if (top == stack.length) {
+                                stack = Arrays.copyOf(stack, 2 * top);
+                            }
+                            stack[top++] = neighbor;
+                        }
+                    }
+                }
+            }
+        }
+        return probedNumber;
+    }
+
+    /**
+     * Probe all unprobed and unflagged neighbor squares if as many of them are flagged as there are mines
+     * @param index index of a probed square
+     * @return number of squares probed by this call
+     */
+    public int probeNeighbors(int index) {
+        int state = squares.get(index);
+        if ((state & BoardState.PROBED) == 0 || (state & BoardState.MINE) != 0) {
+            return 0;
+        }
+        int row = index / gridColumn;
+        int col = index % gridColumn;
+        int flagCount = 0;
+        for (int r = Math.max(0, row - 1); r <= Math.min(gridRow - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(gridColumn - 1, col + 1); c++) {
+                if ((squares.get(r * gridColumn + c) & BoardState.FLAGGED) != 0) {
+                    flagCount++;
+                }
+            }
+        }
+        // if AFN
+        if (flagCount != getNumber(index)) {
+            return 0;
+        }
+        int probedNumber = 0;
+        for (int r = Math.max(0, row - 1); r <= Math.min(gridRow - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(gridColumn - 1, col + 1); c++) {
+                probedNumber += probe(r * gridColumn + c);
+            }
+        }
+        return probedNumber;
+    }
+
+    /**
+     * Flag a covered square
+     * @param index index of the square
+     * @return false if the square is probed or flagged already
+     */
+    public boolean flag(int index) {
+        if (status.get() != PLAYING) {
+            return false;
+        }
+        int state;
+        do {
+            state = squares.get(index);
+            if ((state & (BoardState.PROBED | BoardState.FLAGGED)) != 0) {
+                return false;
+            }
+        } while (!squares.compareAndSet(index, state, state | BoardState.FLAGGED));
+        flaggedSquareNumber.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Unflag a flagged square
+     * @param index index of the square
+     * @return false if the square is not flagged
+     */
+    public boolean unflag(int index) {
+        if (status.get() != PLAYING) {
+            return false;
+        }
+        int state;
+        do {
+            state = squares.get(index);
+            if ((state & BoardState.FLAGGED) == 0) {
+                return false;
+            }
+        } while (!squares.compareAndSet(index, state, state & ~BoardState.FLAGGED));
+        flaggedSquareNumber.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Mark a covered and unflagged square probed and count it
+     * @return false if the square is probed or flagged already
+     */
+    private boolean tryProbe(int index) {
+        int state;
+        do {
+            state = squares.get(index);
+            if ((state & (BoardState.PROBED | BoardState.FLAGGED)) != 0) {
+                return false;
+            }
+        } while (!squares.compareAndSet(index, state, state | BoardState.PROBED));
+        if ((state & BoardState.MINE) != 0) {
+            status.compareAndSet(PLAYING, EXPLODED);
+        } else if (restSafeSquareNumber.decrementAndGet() == 0) {
+            status.compareAndSet(PLAYING, CLEARED);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,218 @@
+import java.util.*;
+
+/**
+ * A sparse integer matrix of linear constraints on squares
+ * Each row states that the sum of coefficient * mine (0 or 1) over its squares
+ * equals a number. Rows are reduced by Gaussian elimination and squares fixed
+ * by bounds reasoning are substituted back into the matrix.
+ * The matrix is kept reduced between calls of solve, so rows and squares fixed elsewhere
+ * can be added to it while solving goes on
+ */
+public class ConstraintMatrix {
+
+    /**
+     * A row of the matrix, coefficients of zero are not stored
+     */
+    private static class Row {
+        private final TreeMap<Integer, Integer> coefficients = new TreeMap<Integer, Integer>();
+        private int value;
+
+        private boolean isEmpty() {
+            return coefficients.isEmpty();
+        }
+
+        /**
+         * this = this * factor - other * otherFactor, divided by the gcd of the result
+         * @return false if a coefficient overflows, then the row is left unchanged
+         */
+        private boolean combine(int factor, Row other, int otherFactor) {
+            TreeMap<Integer, Integer> combined = new TreeMap<Integer, Integer>();
+            int combinedValue;
+            try {
+                for (Map.Entry<Integer, Integer> entry : coefficients.entrySet()) {
+                    combined.put(entry.getKey(), Math.multiplyExact(entry.getValue(), factor));
+                }
+                for (Map.Entry<Integer, Integer> entry : other.coefficients.entrySet()) {
+                    int coefficient = Math.subtractExact(combined.getOrDefault(entry.getKey(), 0),
+                        Math.multiplyExact(entry.getValue(), otherFactor));
+                    if (coefficient == 0) {
+                        combined.remove(entry.getKey());
+                    } else {
+                        combined.put(entry.getKey(), coefficient);
+                    }
+                }
+                combinedValue = Math.subtractExact(Math.multiplyExact(value, factor),
+                    Math.multiplyExact(other.value, otherFactor));
+            } catch (ArithmeticException e) {
+                return false;
+            }
+            coefficients.clear();
+            coefficients.putAll(combined);
+            value = combinedValue;
+            normalize();
+            return true;
+        }
+
+        private void normalize() {
+            int gcd = Math.abs(value);
+            for (int coefficient : coefficients.values()) {
+                gcd = gcd(gcd, Math.abs(coefficient));
+            }
+            if (gcd > 1) {
+                for (Map.Entry<Integer, Integer> entry : coefficients.entrySet()) {
+                    entry.setValue(entry.getValue() / gcd);
+                }
+                value /= gcd;
+            }
+        }
+    }
+
+    private final ArrayList<Row> rows = new ArrayList<Row>();
+    // squares whose mine is fixed, true if it is a mine
+    private final HashMap<Integer, Boolean> fixedSquares = new HashMap<Integer, Boolean>();
+    // whether squares were fixed outside solve and are not yet substituted into the rows
+    private boolean substitutionPending = false;
+
+    public int getRowNumber() {
+        return rows.size();
+    }
+
+    /**
+     * Record a square fixed by other means, it is substituted into the rows on the next solve
+     * @param squareIndex index of the square
+     * @param mine whether the square is a mine
+     */
+    public void fixSquare(int squareIndex, boolean mine) {
+        if (fixedSquares.put(squareIndex, mine) == null) {
+            substitutionPending = true;
+        }
+    }
+
+    /**
+     * Add a constraint that the squares contain the given number of mines
+     * @param squareIndices indices of the squares
+     * @param mineNumber number of mines among the squares
+     */
+    public void addConstraint(Collection<Integer> squareIndices, int mineNumber) {
+        Row row = new Row();
+        for (int index : squareIndices) {
+            row.coefficients.put(index, 1);
+        }
+        row.value = mineNumber;
+        substitute(row);
+        if (!row.isEmpty()) {
+            rows.add(row);
+        }
+    }
+
+    /**
+     * Reduce the matrix and fix squares until nothing more can be derived
+     * @return squares fixed by this call, true if the square is a mine
+     */
+    public HashMap<Integer, Boolean> solve() {
+        HashMap<Integer, Boolean> newlyFixedSquares = new HashMap<Integer, Boolean>();
+        boolean matrixUpdated = true;
+        if (substitutionPending) {
+            substituteAll();
+            substitutionPending = false;
+        }
+        while (matrixUpdated) {
+            eliminate();
+            HashMap<Integer, Boolean> boundedSquares = new HashMap<Integer, Boolean>();
+            for (Row row : rows) {
+                fixByBounds(row, boundedSquares);
+            }
+            fixedSquares.putAll(boundedSquares);
+            newlyFixedSquares.putAll(boundedSquares);
+            matrixUpdated = !boundedSquares.isEmpty();
+            if (matrixUpdated) {
+                // substitute fixed squares instead of rebuilding the matrix
+                substituteAll();
+            }
+        }
+        return newlyFixedSquares;
+    }
+
+    private void substituteAll() {
+        Iterator<Row> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            Row row = iterator.next();
+            substitute(row);
+            if (row.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Bring the matrix into reduced row echelon form
+     */
+    private void eliminate() {
+        for (int pivotRowIndex = 0; pivotRowIndex < rows.size(); pivotRowIndex++) {
+            Row pivotRow = rows.get(pivotRowIndex);
+            if (pivotRow.isEmpty()) {
+                continue;
+            }
+            int pivotSquare = pivotRow.coefficients.firstKey();
+            int pivotCoefficient = pivotRow.coefficients.get(pivotSquare);
+            for (Row row : rows) {
+                Integer coefficient = row.coefficients.get(pivotSquare);
+                if (row != pivotRow && coefficient != null) {
+                    int gcd = gcd(Math.abs(pivotCoefficient), Math.abs(coefficient));
+                    // a row which would overflow keeps the pivot square, which is still sound
+                    row.combine(pivotCoefficient / gcd, pivotRow, coefficient / gcd);
+                }
+            }
+        }
+        rows.removeIf(Row::isEmpty);
+    }
+
+    /**
+     * Fix squares of a row if its value equals the least or the greatest possible sum
+     */
+    private void fixByBounds(Row row, HashMap<Integer, Boolean> boundedSquares) {
+        long minSum = 0, maxSum = 0;
+        for (int coefficient : row.coefficients.values()) {
+            if (coefficient < 0) minSum += coefficient;
+            else maxSum += coefficient;
+        }
+        if (row.value != minSum && row.value != maxSum) {
+            return;
+        }
+        boolean positiveIsMine = row.value == maxSum;
+        for (Map.Entry<Integer, Integer> entry : row.coefficients.entrySet()) {
+            boundedSquares.put(entry.getKey(), (entry.getValue() > 0) == positiveIsMine);
+        }
+    }
+
+    /**
+     * Remove fixed squares from a row
+     */
+    private void substitute(Row row) {
+        Iterator<Map.Entry<Integer, Integer>> iterator = row.coefficients.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Integer> entry = iterator.next();
+            Boolean mine = fixedSquares.get(entry.getKey());
+            if (mine != null) {
+                if (mine) {
+                    try {
+                        row.value = Math.subtractExact(row.value, entry.getValue());
+                    } catch (ArithmeticException e) {
+                        // keeping the square in the row is still sound
+                        continue;
+                    }
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
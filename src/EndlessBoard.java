@@ -0,0 +1,665 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * An endless mineboard split into fixed-size chunks
+ * Chunks are generated in background ahead of the opening,
+ * and chunks not used recently are compressed and spilled to an on-disk hash table
+ * so that only their keys stay in memory however far the player goes
+ *
+ * Every chunk but the origin has a parent, the chunk next to it on the way to the origin.
+ * A new chunk is only accepted if all of its squares can be solved by single point
+ * from its parent, using numbers of squares whose neighbors are all in the two chunks.
+ * So every generated square can be solved without guessing from the start square,
+ * and a chunk never has to be solved again when the chunks around it come later.
+ * Mines of a chunk only depend on the seed, its position and its parent,
+ * so a world comes out the same whichever order its chunks are generated in
+ */
+public class EndlessBoard {
+    // mines of a chunk row are spilled as two bytes
+    public final static int CHUNK_SIZE = 16;
+    // the start square has no mines around it
+    public final static int START_SQUARE = CHUNK_SIZE / 2;
+    public final static int MIN_RESIDENT_CHUNKS = 25;
+    // at this density about 7% of chunks can not be solved from their parent and are left without mines
+    public final static double MAX_MINE_DENSITY = 0.2;
+    // squares opened by one probe at most, so that sparse boards do not open without end
+    public final static int MAX_OPENED_SQUARES = 4096;
+
+    public final static int STATE_COVERED = -2;
+    public final static int STATE_FLAGGED = -1;
+    public final static int STATE_MINE = 9;
+
+    private final static int MAX_GENERATION_ATTEMPTS = 1000;
+    // chunks up to this many steps away from probed squares are generated in background
+    private final static int PREFETCH_RADIUS = 2;
+    // a chunk is checked with the squares around it and their numbers
+    private final static int MARGIN = 2;
+    private final static int WINDOW_SIZE = CHUNK_SIZE + 2 * MARGIN;
+    private final static long WINDOW_MASK = (1L << WINDOW_SIZE) - 1;
+    private final static long INTERIOR_MASK = WINDOW_MASK & ~1L & ~(1L << (WINDOW_SIZE - 1));
+    private final static long CHUNK_MASK = (1L << CHUNK_SIZE) - 1;
+
+    // the spill file is a hash table of fixed-size slots: key, payload length, payload
+    private final static int RAW_SIZE = CHUNK_SIZE * 2 + CHUNK_SIZE * CHUNK_SIZE;
+    // deflate output of RAW_SIZE bytes stored in one block is 11 bytes longer at most
+    private final static int SLOT_PAYLOAD = RAW_SIZE + 16;
+    private final static int SLOT_HEADER = 10;
+    private final static int SLOT_SIZE = SLOT_HEADER + SLOT_PAYLOAD;
+    private final static int INITIAL_SPILL_SLOTS = 1024;
+
+    /**
+     * A chunk of squares, mines[row] holds one bit per column
+     */
+    private static class Chunk {
+        private final long[] mines;
+        private final byte[] states;
+
+        private Chunk(long[] mines, byte[] states) {
+            this.mines = mines;
+            this.states = states;
+        }
+
+        private boolean isMine(int row, int col) {
+            return (mines[row] >>> col & 1) != 0;
+        }
+    }
+
+    private final double mineDensity;
+    private final int maxResidentChunks;
+    private final long seed;
+
+    // recently used chunks in access order, the eldest one is spilled when full
+    private final LinkedHashMap<Long, Chunk> residentChunks;
+    private final File spill;
+    private RandomAccessFile spillFile;
+    private long spillSlotNumber;
+    private long spilledChunkNumber;
+    // keys of all generated chunks, resident or spilled
+    private final HashSet<Long> generatedChunks = new HashSet<Long>();
+    private int generatedChunkNumber;
+    private int fallbackChunkNumber;
+    private int stallNumber;
+
+    private final ExecutorService generator;
+    private final Set<Long> pendingChunks = ConcurrentHashMap.newKeySet();
+
+    private boolean boardExplode = false;
+    private long probedSquareNumber;
+
+    /**
+     * @param mineDensity ratio of mines in every chunk, above 0 and at most MAX_MINE_DENSITY
+     * @param maxResidentChunks number of chunks kept uncompressed in memory,
+     *                          at least the 5x5 chunks around the player
+     * @param spill file which spilled chunks are written to
+     * @param seed seed of mine placement
+     */
+    public EndlessBoard(double mineDensity, int maxResidentChunks, File spill, long seed) throws IOException {
+        if (!(mineDensity > 0 && mineDensity <= MAX_MINE_DENSITY)) {
+            throw new IllegalArgumentException("mine density has to be above 0 and at most " + MAX_MINE_DENSITY);
+        }
+        if (maxResidentChunks < MIN_RESIDENT_CHUNKS) {
+            throw new IllegalArgumentException("at least " + MIN_RESIDENT_CHUNKS + " chunks have to be resident");
+        }
+        this.mineDensity = mineDensity;
+        this.maxResidentChunks = maxResidentChunks;
+        this.seed = seed;
+        this.spill = spill;
+        spillFile = new RandomAccessFile(spill, "rw");
+        spillSlotNumber = INITIAL_SPILL_SLOTS;
+        spillFile.setLength(0);
+        spillFile.setLength(spillSlotNumber * SLOT_SIZE);
+        residentChunks = new LinkedHashMap<Long, Chunk>(2 * maxResidentChunks, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+                if (size() <= EndlessBoard.this.maxResidentChunks) {
+                    return false;
+                }
+                spill(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        generator = Executors.newSingleThreadExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "chunk-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stop generating chunks and close the spill file
+     */
+    public void close() throws IOException {
+        generator.shutdownNow();
+        try {
+            // a chunk being generated still reads the spill file
+            generator.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            spillFile.close();
+        }
+    }
+
+    public boolean isFailed() {
+        return boardExplode;
+    }
+
+    public synchronized long getProbedSquareNumber() {
+        return probedSquareNumber;
+    }
+
+    public synchronized int getResidentChunkNumber() {
+        return residentChunks.size();
+    }
+
+    public synchronized int getGeneratedChunkNumber() {
+        return generatedChunkNumber;
+    }
+
+    /**
+     * Get number of chunks left without mines since no candidate could be solved
+     */
+    public synchronized int getFallbackChunkNumber() {
+        return fallbackChunkNumber;
+    }
+
+    /**
+     * Get number of probes and flags which had to wait for chunks not generated in background yet
+     */
+    public synchronized int getStallNumber() {
+        return stallNumber;
+    }
+
+    /**
+     * Get what the player sees on a square
+     * @return STATE_COVERED, STATE_FLAGGED, STATE_MINE or number of neighbor mines
+     */
+    public synchronized int getState(int row, int col) {
+        Chunk chunk = getChunk(Math.floorDiv(row, CHUNK_SIZE), Math.floorDiv(col, CHUNK_SIZE));
+        if (chunk == null) {
+            return STATE_COVERED;
+        }
+        byte state = chunk.states[Math.floorMod(row, CHUNK_SIZE) * CHUNK_SIZE + Math.floorMod(col, CHUNK_SIZE)];
+        if ((state & BoardState.FLAGGED) != 0) {
+            return STATE_FLAGGED;
+        }
+        if ((state & BoardState.PROBED) == 0) {
+            return STATE_COVERED;
+        }
+        return isMine(row, col) ? STATE_MINE : countNeighborMines(row, col);
+    }
+
+    /**
+     * Probe a square and open the area around it if there is no mine nearby
+     * Start the game by probing (START_SQUARE, START_SQUARE)
+     * The opening stops after MAX_OPENED_SQUARES and at chunks still being generated,
+     * squares left covered next to opened zeros are safe and can be probed to go on
+     * @return false if the square is a mine
+     */
+    public boolean probe(int row, int col) {
+        if (getProbedSquareNumber() == 0) {
+            // the chunks around the start are generated when the game starts
+            for (int i = -1; i < 2; i++) {
+                for (int j = -1; j < 2; j++) {
+                    ensureChunk(i, j);
+                }
+            }
+        }
+        ensureSquare(row, col);
+        HashSet<Long> prefetchedChunks = new HashSet<Long>();
+        ArrayDeque<int[]> squaresToProbe = new ArrayDeque<int[]>();
+        squaresToProbe.add(new int[] {row, col});
+        int openedNumber = 0;
+        while (!squaresToProbe.isEmpty() && openedNumber < MAX_OPENED_SQUARES) {
+            int[] position = squaresToProbe.poll();
+            int r = position[0], c = position[1];
+            int chunkRow = Math.floorDiv(r, CHUNK_SIZE);
+            int chunkCol = Math.floorDiv(c, CHUNK_SIZE);
+            if (prefetchedChunks.add(getKey(chunkRow, chunkCol))) {
+                prefetch(chunkRow, chunkCol);
+            }
+            // its number depends on chunks still being generated, so it is left covered
+            if (!isSquareReady(r, c)) {
+                continue;
+            }
+            synchronized (this) {
+                Chunk chunk = getChunk(chunkRow, chunkCol);
+                int offset = Math.floorMod(r, CHUNK_SIZE) * CHUNK_SIZE + Math.floorMod(c, CHUNK_SIZE);
+                if ((chunk.states[offset] & (BoardState.PROBED | BoardState.FLAGGED)) != 0) {
+                    continue;
+                }
+                chunk.states[offset] |= BoardState.PROBED;
+                probedSquareNumber++;
+                openedNumber++;
+                if (isMine(r, c)) {
+                    boardExplode = true;
+                    return false;
+                }
+                if (countNeighborMines(r, c) == 0) {
+                    for (int i = -1; i < 2; i++) {
+                        for (int j = -1; j < 2; j++) {
+                            if (!(i == 0 && j == 0)) {
+                                squaresToProbe.add(new int[] {r + i, c + j});
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Flag or unflag a covered square
+     */
+    public void toggleFlag(int row, int col) {
+        int chunkRow = Math.floorDiv(row, CHUNK_SIZE);
+        int chunkCol = Math.floorDiv(col, CHUNK_SIZE);
+        if (!isGenerated(getKey(chunkRow, chunkCol))) {
+            synchronized (this) {
+                stallNumber++;
+            }
+            ensureChunk(chunkRow, chunkCol);
+        }
+        synchronized (this) {
+            Chunk chunk = getChunk(chunkRow, chunkCol);
+            int offset = Math.floorMod(row, CHUNK_SIZE) * CHUNK_SIZE + Math.floorMod(col, CHUNK_SIZE);
+            if ((chunk.states[offset] & BoardState.PROBED) == 0) {
+                chunk.states[offset] ^= BoardState.FLAGGED;
+            }
+        }
+    }
+
+    private boolean isMine(int row, int col) {
+        Chunk chunk = getChunk(Math.floorDiv(row, CHUNK_SIZE), Math.floorDiv(col, CHUNK_SIZE));
+        return chunk.isMine(Math.floorMod(row, CHUNK_SIZE), Math.floorMod(col, CHUNK_SIZE));
+    }
+
+    private int countNeighborMines(int row, int col) {
+        int count = 0;
+        for (int i = -1; i < 2; i++) {
+            for (int j = -1; j < 2; j++) {
+                if (!(i == 0 && j == 0) && isMine(row + i, col + j)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return whether the chunks of a square and its neighbors are generated
+     */
+    private boolean isSquareReady(int row, int col) {
+        for (int chunkRow = Math.floorDiv(row - 1, CHUNK_SIZE); chunkRow <= Math.floorDiv(row + 1, CHUNK_SIZE); chunkRow++) {
+            for (int chunkCol = Math.floorDiv(col - 1, CHUNK_SIZE); chunkCol <= Math.floorDiv(col + 1, CHUNK_SIZE); chunkCol++) {
+                if (!isGenerated(getKey(chunkRow, chunkCol))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generate the chunks a probed square needs right away if the background has not yet
+     */
+    private void ensureSquare(int row, int col) {
+        if (isSquareReady(row, col)) {
+            return;
+        }
+        synchronized (this) {
+            stallNumber++;
+        }
+        for (int chunkRow = Math.floorDiv(row - 1, CHUNK_SIZE); chunkRow <= Math.floorDiv(row + 1, CHUNK_SIZE); chunkRow++) {
+            for (int chunkCol = Math.floorDiv(col - 1, CHUNK_SIZE); chunkCol <= Math.floorDiv(col + 1, CHUNK_SIZE); chunkCol++) {
+                ensureChunk(chunkRow, chunkCol);
+            }
+        }
+    }
+
+    /**
+     * Generate chunks around a chunk in background, nearest first,
+     * so that they are ready before the opening reaches them
+     */
+    private void prefetch(int chunkRow, int chunkCol) {
+        for (int distance = 1; distance <= 2 * PREFETCH_RADIUS; distance++) {
+            for (int i = -PREFETCH_RADIUS; i <= PREFETCH_RADIUS; i++) {
+                for (int j = -PREFETCH_RADIUS; j <= PREFETCH_RADIUS; j++) {
+                    if (Math.abs(i) + Math.abs(j) != distance) {
+                        continue;
+                    }
+                    int r = chunkRow + i, c = chunkCol + j;
+                    long key = getKey(r, c);
+                    if (!isGenerated(key) && pendingChunks.add(key)) {
+                        generator.execute(() -> {
+                            try {
+                                ensureChunk(r, c);
+                            } finally {
+                                pendingChunks.remove(key);
+                            }
+                        });
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized boolean isGenerated(long key) {
+        return generatedChunks.contains(key);
+    }
+
+    /**
+     * Get the parent of a chunk other than the origin,
+     * the chunk next to it along the longer way to the origin
+     * @return row and column of the parent chunk
+     */
+    private static int[] getParent(int chunkRow, int chunkCol) {
+        if (Math.abs(chunkRow) >= Math.abs(chunkCol)) {
+            return new int[] {chunkRow - Integer.signum(chunkRow), chunkCol};
+        }
+        return new int[] {chunkRow, chunkCol - Integer.signum(chunkCol)};
+    }
+
+    /**
+     * Generate a chunk if it does not exist
+     * Parents not generated yet are generated first, from the nearest generated one down
+     */
+    private void ensureChunk(int chunkRow, int chunkCol) {
+        ArrayList<int[]> path = new ArrayList<int[]>();
+        int[] position = {chunkRow, chunkCol};
+        while (!isGenerated(getKey(position[0], position[1]))) {
+            path.add(position);
+            if (position[0] == 0 && position[1] == 0) {
+                break;
+            }
+            position = getParent(position[0], position[1]);
+        }
+        for (int i = path.size() - 1; i >= 0; i--) {
+            generate(path.get(i)[0], path.get(i)[1]);
+        }
+    }
+
+    /**
+     * Generate a chunk whose parent is generated
+     * The candidate is generated without holding the lock,
+     * since it only depends on the parent, which never changes once generated
+     */
+    private void generate(int chunkRow, int chunkCol) {
+        long key = getKey(chunkRow, chunkCol);
+        long[] knownPlane = new long[WINDOW_SIZE];
+        long[] minePlane = new long[WINDOW_SIZE];
+        synchronized (this) {
+            if (isGenerated(key)) {
+                return;
+            }
+            readWindow(chunkRow, chunkCol, knownPlane, minePlane);
+        }
+        long[] chunkMines = generateChunk(chunkRow, chunkCol, knownPlane, minePlane);
+        synchronized (this) {
+            if (isGenerated(key)) {
+                return;
+            }
+            if (chunkMines == null) {
+                fallbackChunkNumber++;
+                chunkMines = new long[CHUNK_SIZE];
+            }
+            residentChunks.put(key, new Chunk(chunkMines, new byte[CHUNK_SIZE * CHUNK_SIZE]));
+            generatedChunks.add(key);
+            generatedChunkNumber++;
+        }
+    }
+
+    /**
+     * Copy the squares of the parent next to a chunk into window planes
+     * The origin has no parent, so its window is left empty
+     * @param knownPlane squares of the parent
+     * @param minePlane mines of the parent
+     */
+    private void readWindow(int chunkRow, int chunkCol, long[] knownPlane, long[] minePlane) {
+        if (chunkRow == 0 && chunkCol == 0) {
+            return;
+        }
+        int[] parent = getParent(chunkRow, chunkCol);
+        Chunk chunk = getChunk(parent[0], parent[1]);
+        int i = parent[0] - chunkRow;
+        int shift = MARGIN + (parent[1] - chunkCol) * CHUNK_SIZE;
+        for (int row = 0; row < CHUNK_SIZE; row++) {
+            int windowRow = MARGIN + i * CHUNK_SIZE + row;
+            if (windowRow >= 0 && windowRow < WINDOW_SIZE) {
+                knownPlane[windowRow] |= toWindow(CHUNK_MASK, shift);
+                minePlane[windowRow] |= toWindow(chunk.mines[row], shift);
+            }
+        }
+    }
+
+    private static long toWindow(long chunkRow, int shift) {
+        return (shift >= 0 ? chunkRow << shift : chunkRow >>> -shift) & WINDOW_MASK;
+    }
+
+    /**
+     * Randomly place mines in a chunk until all of its squares can be solved by single point
+     * from its parent, which is all solvable already.
+     * Only numbers of squares whose neighbors are all in the window are used,
+     * so squares next to other chunks are solved from inside the chunk.
+     * If no candidate can be solved, a chunk without mines is taken,
+     * which is solved from any safe square next to it
+     * @return mines of the chunk, or null for a chunk without mines
+     * @throws IllegalStateException if not even a chunk without mines can be solved
+     */
+    private long[] generateChunk(int chunkRow, int chunkCol, long[] knownPlane, long[] minePlane) {
+        SplittableRandom random = new SplittableRandom(seed ^ (getKey(chunkRow, chunkCol) * 0x9E3779B97F4A7C15L));
+        boolean origin = chunkRow == 0 && chunkCol == 0;
+        int center = START_SQUARE;
+        int mineNumber = (int) Math.round(mineDensity * CHUNK_SIZE * CHUNK_SIZE);
+        if (origin) {
+            mineNumber = Math.min(mineNumber, CHUNK_SIZE * CHUNK_SIZE - 9);
+        }
+
+        // numbers can only be used on squares whose neighbors are all generated
+        long[] settled = new long[WINDOW_SIZE];
+        long[] target = new long[WINDOW_SIZE];
+        long[] generated = knownPlane.clone();
+        for (int i = MARGIN; i < MARGIN + CHUNK_SIZE; i++) {
+            generated[i] |= CHUNK_MASK << MARGIN;
+            target[i] = CHUNK_MASK << MARGIN;
+        }
+        for (int i = 1; i < WINDOW_SIZE - 1; i++) {
+            long full = generated[i - 1] & generated[i] & generated[i + 1];
+            settled[i] = full & (full << 1) & (full >>> 1) & INTERIOR_MASK;
+        }
+
+        BitboardSolver solver = BitboardSolver.getSolver();
+        long[] chunkMines = new long[CHUNK_SIZE];
+        for (int attempt = 0; attempt <= MAX_GENERATION_ATTEMPTS; attempt++) {
+            Arrays.fill(chunkMines, 0);
+            // the last attempt is the chunk without mines
+            int placedMineNum = attempt < MAX_GENERATION_ATTEMPTS ? 0 : mineNumber;
+            while (placedMineNum < mineNumber) {
+                int r = random.nextInt(CHUNK_SIZE);
+                int c = random.nextInt(CHUNK_SIZE);
+                if (origin && Math.abs(r - center) <= 1 && Math.abs(c - center) <= 1) {
+                    continue;
+                }
+                if ((chunkMines[r] >>> c & 1) == 0) {
+                    chunkMines[r] |= 1L << c;
+                    placedMineNum++;
+                }
+            }
+            long[] windowMines = minePlane.clone();
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                windowMines[MARGIN + i] |= chunkMines[i] << MARGIN;
+            }
+            long[] revealed = new long[WINDOW_SIZE];
+            long[] flagged = new long[WINDOW_SIZE];
+            for (int i = 0; i < WINDOW_SIZE; i++) {
+                revealed[i] = knownPlane[i] & ~windowMines[i];
+                flagged[i] = knownPlane[i] & windowMines[i];
+            }
+            if (origin) {
+                revealed[MARGIN + center] |= 1L << (MARGIN + center);
+            }
+            solver.load(WINDOW_SIZE, WINDOW_SIZE, windowMines);
+            if (solver.solve(revealed, flagged, settled, target)) {
+                return attempt < MAX_GENERATION_ATTEMPTS ? chunkMines : null;
+            }
+        }
+        throw new IllegalStateException("chunk (" + chunkRow + ", " + chunkCol + ") cannot be solved without guessing");
+    }
+
+    /**
+     * Get a chunk, loading it back from the spill file if necessary
+     * @return the chunk or null if it is not generated
+     */
+    private Chunk getChunk(int chunkRow, int chunkCol) {
+        long key = getKey(chunkRow, chunkCol);
+        Chunk chunk = residentChunks.get(key);
+        if (chunk == null) {
+            chunk = load(key);
+            if (chunk != null) {
+                residentChunks.put(key, chunk);
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Compress a chunk and write it to its slot of the spill file
+     * A chunk spilled again overwrites its own slot, so the file only grows with new chunks
+     */
+    private void spill(long key, Chunk chunk) {
+        byte[] raw = new byte[RAW_SIZE];
+        for (int row = 0; row < CHUNK_SIZE; row++) {
+            raw[row * 2] = (byte) chunk.mines[row];
+            raw[row * 2 + 1] = (byte) (chunk.mines[row] >>> 8);
+        }
+        System.arraycopy(chunk.states, 0, raw, CHUNK_SIZE * 2, chunk.states.length);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+        int length = deflater.deflate(slot.array(), SLOT_HEADER, SLOT_PAYLOAD);
+        boolean finished = deflater.finished();
+        deflater.end();
+        if (!finished) {
+            throw new IllegalStateException("chunk does not fit a spill slot");
+        }
+        slot.putLong(key).putShort((short) length);
+        try {
+            if (2 * (spilledChunkNumber + 1) > spillSlotNumber) {
+                growSpillFile();
+            }
+            long slotIndex = findSpillSlot(spillFile, spillSlotNumber, key);
+            if (slotIndex < 0) {
+                slotIndex = -slotIndex - 1;
+                spilledChunkNumber++;
+            }
+            spillFile.seek(slotIndex * SLOT_SIZE);
+            spillFile.write(slot.array(), 0, SLOT_HEADER + length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read a spilled chunk back
+     * @return the chunk or null if it was never spilled
+     */
+    private Chunk load(long key) {
+        byte[] raw = new byte[RAW_SIZE];
+        try {
+            long slotIndex = findSpillSlot(spillFile, spillSlotNumber, key);
+            if (slotIndex < 0) {
+                return null;
+            }
+            spillFile.seek(slotIndex * SLOT_SIZE + 8);
+            byte[] buffer = new byte[spillFile.readUnsignedShort()];
+            spillFile.readFully(buffer);
+            Inflater inflater = new Inflater();
+            inflater.setInput(buffer);
+            inflater.inflate(raw);
+            inflater.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("corrupted spill file", e);
+        }
+        long[] mines = new long[CHUNK_SIZE];
+        for (int row = 0; row < CHUNK_SIZE; row++) {
+            mines[row] = (raw[row * 2] & 0xFFL) | (raw[row * 2 + 1] & 0xFFL) << 8;
+        }
+        byte[] states = Arrays.copyOfRange(raw, CHUNK_SIZE * 2, raw.length);
+        return new Chunk(mines, states);
+    }
+
+    /**
+     * Find the slot of a chunk by linear probing, a slot with zero payload length is empty
+     * @return index of the slot holding the chunk, or -(index of the empty slot) - 1
+     */
+    private static long findSpillSlot(RandomAccessFile file, long slotNumber, long key) {
+        byte[] header = new byte[SLOT_HEADER];
+        long slotIndex = mix(key) & (slotNumber - 1);
+        try {
+            while (true) {
+                file.seek(slotIndex * SLOT_SIZE);
+                file.readFully(header);
+                ByteBuffer buffer = ByteBuffer.wrap(header);
+                long slotKey = buffer.getLong();
+                if (buffer.getShort() == 0) {
+                    return -slotIndex - 1;
+                }
+                if (slotKey == key) {
+                    return slotIndex;
+                }
+                slotIndex = (slotIndex + 1) & (slotNumber - 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Double the slots of the spill file, rehashing every chunk into a new file
+     * which then replaces the old one
+     */
+    private void growSpillFile() throws IOException {
+        File grown = new File(spill.getPath() + ".grow");
+        long grownSlotNumber = 2 * spillSlotNumber;
+        try (RandomAccessFile grownFile = new RandomAccessFile(grown, "rw")) {
+            grownFile.setLength(0);
+            grownFile.setLength(grownSlotNumber * SLOT_SIZE);
+            byte[] slot = new byte[SLOT_SIZE];
+            for (long slotIndex = 0; slotIndex < spillSlotNumber; slotIndex++) {
+                spillFile.seek(slotIndex * SLOT_SIZE);
+                spillFile.readFully(slot);
+                ByteBuffer buffer = ByteBuffer.wrap(slot);
+                long key = buffer.getLong();
+                int length = buffer.getShort() & 0xFFFF;
+                if (length == 0) {
+                    continue;
+                }
+                grownFile.seek((-findSpillSlot(grownFile, grownSlotNumber, key) - 1) * SLOT_SIZE);
+                grownFile.write(slot, 0, SLOT_HEADER + length);
+            }
+        }
+        spillFile.close();
+        Files.move(grown.toPath(), spill.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        spillFile = new RandomAccessFile(spill, "rw");
+        spillSlotNumber = grownSlotNumber;
+    }
+
+    private static long mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 29);
+    }
+
+    private static long getKey(int chunkRow, int chunkCol) {
+        return (long) chunkRow << 32 | (chunkCol & 0xFFFFFFFFL);
+    }
+}
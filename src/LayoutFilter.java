@@ -0,0 +1,171 @@
+import java.util.Arrays;
+
+/**
+ * Linear checks of a mine layout for motifs which force a guess
+ * A motif is only reported if a mine and a safe square can be swapped
+ * without changing any number the player can ever see or the mine number,
+ * so no solver can tell the two layouts apart
+ *   ENCLOSED: a mine and a safe square both without safe neighbors,
+ *             which no number ever touches
+ *   FIFTY_FIFTY: a mine and a safe square close to each other where every square
+ *                next to only one of them is a mine
+ *   MINE_WALL: mines cut safe squares off the area opened from the clicked square,
+ *              and a mine lies beyond the wall too
+ */
+public class LayoutFilter {
+    public final static int NONE = -1;
+    public final static int ENCLOSED = 0;
+    public final static int FIFTY_FIFTY = 1;
+    public final static int MINE_WALL = 2;
+    public final static int FILTER_NUMBER = 3;
+
+    private final int gridRow;
+    private final int gridColumn;
+    // safe squares connected to the clicked square, reused between checks
+    private final boolean[] inComponent;
+    private final int[] componentQueue;
+
+    public LayoutFilter(int row, int column) {
+        gridRow = row;
+        gridColumn = column;
+        inComponent = new boolean[row * column];
+        componentQueue = new int[row * column];
+    }
+
+    /**
+     * Find the first motif forcing a guess, cheapest checks first
+     * @param mines mines[row * column + col] is true on mines
+     * @param mineCounts number of mines in the 3x3 area around each square, itself included
+     * @param clickedSquareIndex the index of first clicked square, with no mine around
+     * @return the motif found or NONE
+     */
+    public int check(boolean[] mines, byte[] mineCounts, int clickedSquareIndex) {
+        if (hasEnclosedPair(mines, mineCounts, clickedSquareIndex)) {
+            return ENCLOSED;
+        }
+        if (hasFiftyFifty(mines, clickedSquareIndex)) {
+            return FIFTY_FIFTY;
+        }
+        if (hasMineWall(mines, clickedSquareIndex)) {
+            return MINE_WALL;
+        }
+        return NONE;
+    }
+
+    private boolean hasEnclosedPair(boolean[] mines, byte[] mineCounts, int clickedSquareIndex) {
+        boolean enclosedMine = false;
+        boolean enclosedSafe = false;
+        for (int index = 0; index < mines.length; index++) {
+            int row = index / gridColumn;
+            int col = index % gridColumn;
+            int neighborNumber = (Math.min(gridRow - 1, row + 1) - Math.max(0, row - 1) + 1)
+                * (Math.min(gridColumn - 1, col + 1) - Math.max(0, col - 1) + 1) - 1;
+            int neighborMineNumber = mineCounts[index] - (mines[index] ? 1 : 0);
+            if (neighborNumber == neighborMineNumber && index != clickedSquareIndex) {
+                if (mines[index]) {
+                    enclosedMine = true;
+                } else {
+                    enclosedSafe = true;
+                }
+            }
+        }
+        return enclosedMine && enclosedSafe;
+    }
+
+    /**
+     * Squares more than 2 apart share no neighbor, so such pairs are left to the other checks
+     */
+    private boolean hasFiftyFifty(boolean[] mines, int clickedSquareIndex) {
+        int clickedRow = clickedSquareIndex / gridColumn;
+        int clickedCol = clickedSquareIndex % gridColumn;
+        for (int mine = 0; mine < mines.length; mine++) {
+            if (!mines[mine]) {
+                continue;
+            }
+            int mineRow = mine / gridColumn;
+            int mineCol = mine % gridColumn;
+            for (int row = Math.max(0, mineRow - 2); row <= Math.min(gridRow - 1, mineRow + 2); row++) {
+                for (int col = Math.max(0, mineCol - 2); col <= Math.min(gridColumn - 1, mineCol + 2); col++) {
+                    // squares around the clicked square are opened by the first click
+                    if (!mines[row * gridColumn + col]
+                        && (Math.abs(row - clickedRow) > 1 || Math.abs(col - clickedCol) > 1)
+                        && isSwappable(mines, mineRow, mineCol, row, col)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return whether every square next to exactly one of the two squares is a mine
+     */
+    private boolean isSwappable(boolean[] mines, int row1, int col1, int row2, int col2) {
+        for (int row = Math.max(0, Math.min(row1, row2) - 1); row <= Math.min(gridRow - 1, Math.max(row1, row2) + 1); row++) {
+            for (int col = Math.max(0, Math.min(col1, col2) - 1); col <= Math.min(gridColumn - 1, Math.max(col1, col2) + 1); col++) {
+                if ((row == row1 && col == col1) || (row == row2 && col == col2)) {
+                    continue;
+                }
+                boolean nextTo1 = Math.abs(row - row1) <= 1 && Math.abs(col - col1) <= 1;
+                boolean nextTo2 = Math.abs(row - row2) <= 1 && Math.abs(col - col2) <= 1;
+                if (nextTo1 != nextTo2 && !mines[row * gridColumn + col]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Safe squares outside the area opened from the clicked square are not next to it,
+     * so like every square away from the area they are only bounded by the mine number
+     */
+    private boolean hasMineWall(boolean[] mines, int clickedSquareIndex) {
+        Arrays.fill(inComponent, false);
+        int head = 0;
+        int tail = 0;
+        componentQueue[tail++] = clickedSquareIndex;
+        inComponent[clickedSquareIndex] = true;
+        while (head < tail) {
+            int index = componentQueue[head++];
+            int row = index / gridColumn;
+            int col = index % gridColumn;
+            for (int r = Math.max(0, row - 1); r <= Math.min(gridRow - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(gridColumn - 1, col + 1); c++) {
+                    int neighbor = r * gridColumn + c;
+                    if (!mines[neighbor] && !inComponent[neighbor]) {
+                        inComponent[neighbor] = true;
+                        componentQueue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+        int safeNumber = 0;
+        for (boolean mine : mines) {
+            if (!mine) safeNumber++;
+        }
+        if (tail == safeNumber) {
+            return false;
+        }
+        for (int index = 0; index < mines.length; index++) {
+            if (mines[index] && !isNextToComponent(index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isNextToComponent(int index) {
+        int row = index / gridColumn;
+        int col = index % gridColumn;
+        for (int r = Math.max(0, row - 1); r <= Math.min(gridRow - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(gridColumn - 1, col + 1); c++) {
+                if (inComponent[r * gridColumn + c]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -11,18 +11,19 @@ public class MineBoard {
     public final static byte COUNT_NEIGHBOR_FLAG = 1;
     public final static byte COUNT_NEIGHBOR_UNPROBED = 2;
 
-    private ImageIcon zeroIcon;
-    private ImageIcon oneIcon;
-    private ImageIcon twoIcon;
-    private ImageIcon threeIcon;
-    private ImageIcon fourIcon;
-    private ImageIcon fiveIcon;
-    private ImageIcon sixIcon;
-    private ImageIcon sevenIcon;
-    private ImageIcon eightIcon;
-    private ImageIcon mineIcon;
-    private ImageIcon flagIcon;
-    private ImageIcon squareIcon;
+    // icons are shared by all boards and loaded once
+    private static ImageIcon zeroIcon;
+    private static ImageIcon oneIcon;
+    private static ImageIcon twoIcon;
+    private static ImageIcon threeIcon;
+    private static ImageIcon fourIcon;
+    private static ImageIcon fiveIcon;
+    private static ImageIcon sixIcon;
+    private static ImageIcon sevenIcon;
+    private static ImageIcon eightIcon;
+    private static ImageIcon mineIcon;
+    private static ImageIcon flagIcon;
+    private static ImageIcon squareIcon;
     
     private boolean boardExplode = false;
     private boolean boardClear = false;
@@ -33,16 +34,82 @@ public class MineBoard {
     private final SquareButton[][] squares;
 
     private int probedSquareNumber;
+    private int flaggedSquareNumber;
+
+    // a board is a pure function of its seed, size, mine number and first clicked square
+    private SplittableRandom seedSource = new SplittableRandom();
+    private long seed;
+    private boolean seedFixed = false;
+    private int clickedSquareIndex = -1;
+
+    // copy-on-write record of the squares for undo and what-if analysis
+    private final BoardState state;
+
+    // metrics of the generated board and the range candidates have to be in
+    private BoardMetrics metrics;
+    private BoardMetrics minimumMetrics;
+    private BoardMetrics maximumMetrics;
+    private int metricRejectionNumber;
+    // mines of the candidate being placed and mine counts around each square, kept while placing
+    private final boolean[] candidateMines;
+    private final byte[] candidateMineCounts;
+
+    // work per square the slowest 0.1% of solves go over on every preset,
+    // a limit on work instead of a deadline does not depend on the machine
+    private final static long MAX_WORK_PER_SQUARE = 20;
+    private SolveBudget solveBudget;
+    private int budgetExhaustionNumber;
+    // motifs forcing a guess are found from the mines alone, so they are checked before solving
+    private final LayoutFilter layoutFilter;
+    private final int[] filterRejectionNumbers = new int[LayoutFilter.FILTER_NUMBER];
+    private int solveNumber;
+    // learns which techniques pay off over the boards generated from one seed source
+    private AdaptiveSolver solver = AdaptiveSolver.getSolver();
+
+    /**
+     * A snapshot of the board which can be restored later
+     */
+    public static class Snapshot {
+        private final BoardState.Snapshot state;
+        private final int probedSquareNumber;
+        private final int flaggedSquareNumber;
+        private final boolean boardExplode;
+        private final boolean boardClear;
+
+        private Snapshot(BoardState.Snapshot state, int probedSquareNumber, int flaggedSquareNumber,
+                boolean boardExplode, boolean boardClear) {
+            this.state = state;
+            this.probedSquareNumber = probedSquareNumber;
+            this.flaggedSquareNumber = flaggedSquareNumber;
+            this.boardExplode = boardExplode;
+            this.boardClear = boardClear;
+        }
+
+        public BoardState.Snapshot getState() {
+            return state;
+        }
+    }
 
     public MineBoard(int row, int col, int mineNumber) {
         gridRow = row;
         gridColumn = col;
         this.mineNumber = mineNumber;
         squares = new SquareButton[row][col];
+        state = new BoardState(row * col);
+        candidateMines = new boolean[row * col];
+        candidateMineCounts = new byte[row * col];
+        layoutFilter = new LayoutFilter(row, col);
+        solveBudget = new SolveBudget(Long.MAX_VALUE, Integer.MAX_VALUE, 4096, MAX_WORK_PER_SQUARE * row * col);
+        // boards of the default seed source are not meant to be reproduced
+        solver.setEarlyRejection(true);
         loadImages();
     }
 
-    private void loadImages() {
+    private static synchronized void loadImages() {
+        if (GraphicsEnvironment.isHeadless() || squareIcon != null) {
+            // boards used by tools without display need no icons
+            return;
+        }
         zeroIcon = getScaledImageIcon(20, 20, "./images/number0.png");
         oneIcon = getScaledImageIcon(20, 20, "./images/number1.png");
         twoIcon = getScaledImageIcon(20, 20, "./images/number2.png");
@@ -79,6 +146,10 @@ public class MineBoard {
         boardExplode = false;
         boardClear = false;
         probedSquareNumber = 0;
+        flaggedSquareNumber = 0;
+        clickedSquareIndex = -1;
+        metrics = null;
+        state.clear();
         for (int row = 0; row < gridRow; row++) {
             for (int col = 0; col < gridColumn; col++) {
                 SquareButton square = squares[row][col];
@@ -92,6 +163,37 @@ public class MineBoard {
         }
     }
 
+    /**
+     * Create squares which are not shown in any panel
+     * for tools running solvers on the board
+     */
+    public void createSquares() {
+        for (int row = 0; row < gridRow; row++) {
+            for (int col = 0; col < gridColumn; col++) {
+                squares[row][col] = new SquareButton();
+            }
+        }
+        initialize();
+    }
+
+    /**
+     * Clear squares probed or flagged by a solver except the clicked square
+     * @param clickedSquareIndex the index of first clicked square
+     */
+    public void clearSolverOperation(int clickedSquareIndex) {
+        for (int row = 0; row < gridRow; row++) {
+            for (int col = 0; col < gridColumn; col++) {
+                if (row * gridColumn + col != clickedSquareIndex) {
+                    squares[row][col].setEnabled(true);
+                    squares[row][col].setFlagged(false);
+                } else {
+                    squares[row][col].setFlagged(false);
+                    squares[row][col].setEnabled(false);
+                }
+            }
+        }
+    }
+
     public void setSquare(int row, int col, SquareButton s) {
         squares[row][col] = s;
     }
@@ -112,15 +214,233 @@ public class MineBoard {
         return mineNumber;
     }
 
+    public int getFlaggedSquareNumber() {
+        return flaggedSquareNumber;
+    }
+
+    public int getProbedSquareNumber() {
+        return probedSquareNumber;
+    }
+
+    /**
+     * Set the generator which seeds of new boards are drawn from
+     * Give every parallel generator a stream split from one source to keep them reproducible.
+     * Learning which techniques pay off starts over and early rejection is not used,
+     * so the boards only depend on the source and the boards asked for
+     * @param source the seed generator
+     */
+    public void setSeedSource(SplittableRandom source) {
+        seedSource = source;
+        solver = AdaptiveSolver.getSolver();
+    }
+
+    /**
+     * Generate the next board from the given seed instead of a new one
+     * The seed is taken as one a board was accepted with, as in a share code,
+     * so its candidate is replayed without being checked again
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        seedFixed = true;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Only generate boards whose metrics are in the range
+     * Candidates out of the range are rejected before they are solved,
+     * so a range no board can meet makes generation never end
+     * @param minimum lowest metrics allowed, or null for no range
+     * @param maximum highest metrics allowed
+     */
+    public void setTargetMetrics(BoardMetrics minimum, BoardMetrics maximum) {
+        minimumMetrics = minimum;
+        maximumMetrics = maximum;
+    }
+
+    /**
+     * Get metrics of the generated board
+     * @return the metrics or null if the board is not generated yet
+     */
+    public BoardMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get number of candidates rejected so far for metrics out of the target range
+     */
+    public int getMetricRejectionNumber() {
+        return metricRejectionNumber;
+    }
+
+    /**
+     * Set limits on solving each candidate, candidates going over them are rejected
+     * By default a solve may visit MAX_WORK_PER_SQUARE squares and constraints per square of the board
+     * With a deadline, which candidate is accepted depends on the speed of the machine,
+     * so the same seed may give different boards
+     * @param budget the limits
+     */
+    public void setSolveBudget(SolveBudget budget) {
+        solveBudget = budget;
+    }
+
+    /**
+     * Get number of candidates rejected so far for going over the solve budget
+     */
+    public int getBudgetExhaustionNumber() {
+        return budgetExhaustionNumber;
+    }
+
+    /**
+     * Get number of candidates rejected so far by a layout filter
+     * @param filter one of the filters in LayoutFilter
+     */
+    public int getFilterRejectionNumber(int filter) {
+        return filterRejectionNumbers[filter];
+    }
+
+    /**
+     * Get number of candidates given to the solver so far
+     */
+    public int getSolveNumber() {
+        return solveNumber;
+    }
+
+    /**
+     * Get the code reproducing current board
+     * @return the code or null if the board is not generated yet
+     */
+    public ShareCode getShareCode() {
+        if (probedSquareNumber == 0 || clickedSquareIndex < 0) {
+            return null;
+        }
+        return new ShareCode(seed, gridRow, gridColumn, mineNumber, clickedSquareIndex);
+    }
+
+    /**
+     * Get the recorded state of a square
+     * @param index index of the square
+     * @return BoardState bits of the square
+     */
+    public byte getSquareState(int index) {
+        return state.get(index);
+    }
+
+    /**
+     * Get squares changed since last call, for publishing moves
+     * @return indices of the changed squares in ascending order
+     */
+    public int[] drainChangedSquares() {
+        return state.drainChanges();
+    }
+
+    /**
+     * Take a snapshot of the board in constant time
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(state.snapshot(), probedSquareNumber, flaggedSquareNumber,
+            boardExplode, boardClear);
+    }
+
+    /**
+     * Return whether the board has not changed since the snapshot
+     * @param snapshot the snapshot to be compared
+     * @return true if nothing changed
+     */
+    public boolean isUnchangedSince(Snapshot snapshot) {
+        return state.isUnchangedSince(snapshot.state);
+    }
+
+    /**
+     * Restore the board to a snapshot
+     * Only squares whose state differs are updated
+     * @param snapshot the snapshot to be restored
+     */
+    public void restore(Snapshot snapshot) {
+        boolean frozen = boardExplode || boardClear;
+        ArrayList<Integer> changedIndices = state.restore(snapshot.state);
+        probedSquareNumber = snapshot.probedSquareNumber;
+        flaggedSquareNumber = snapshot.flaggedSquareNumber;
+        boardExplode = snapshot.boardExplode;
+        boardClear = snapshot.boardClear;
+        if (frozen) {
+            // freezing touches every square, so all of them have to be refreshed
+            for (int index = 0; index < gridRow * gridColumn; index++) {
+                refreshSquare(index);
+            }
+        } else {
+            for (int index : changedIndices) {
+                refreshSquare(index);
+            }
+        }
+        if (boardExplode || boardClear) {
+            freezeBoard();
+        }
+    }
+
+    /**
+     * Update the square button according to the recorded state
+     * @param index index of the square
+     */
+    private void refreshSquare(int index) {
+        SquareButton square = squares[index / gridColumn][index % gridColumn];
+        byte squareState = state.get(index);
+        square.setMine((squareState & BoardState.MINE) != 0);
+        if ((squareState & BoardState.PROBED) != 0) {
+            square.setFlagged(false);
+            square.setEnabled(false);
+            square.setSelected(true);
+            if (square.isMine()) {
+                square.setDisabledIcon(mineIcon);
+            } else {
+                setNumberIcon(square, countNeighor(square, COUNT_NEIGHBOR_MINE));
+            }
+        } else if ((squareState & BoardState.FLAGGED) != 0) {
+            square.setSelected(false);
+            square.setFlagged(true);
+            square.setDisabledIcon(flagIcon);
+        } else {
+            square.setSelected(false);
+            square.setFlagged(false);
+            square.setDisabledIcon(squareIcon);
+        }
+    }
+
     /**
      * Generate map requiring no guessing
+     * The map only depends on the seed, board size, mine number and first clicked square
+     * Every candidate has its own seed and the seed of the accepted one is kept,
+     * since which candidate is accepted also depends on target metrics, the solve budget
+     * and the techniques learned on earlier boards, which share codes do not carry.
+     * Techniques are chosen the same way for all candidates of a board, so learning on them
+     * only takes effect from the next board on.
+     * A fixed seed was accepted before, so its candidate is replayed without solving it again
      * @param clickedSquare first clicked square
      */
     public void generateSolvableMap(SquareButton clickedSquare) {
         int[] position = clickedSquare.getPosition();
-        SPwCSPSolver solver = SPwCSPSolver.getSolver();
+        boolean replaying = seedFixed;
+        if (!seedFixed) {
+            seed = seedSource.nextLong();
+        }
+        seedFixed = false;
+        SplittableRandom candidateSeeds = new SplittableRandom(seed);
+        // techniques in another order may solve other boards, so the order must not change
+        // between the candidates of a board
+        solver.freezeStatistics();
+        long candidateSeed = seed;
         boolean isSolvable = false;
+        BoardMetrics candidateMetrics = null;
         while (!isSolvable) {
+            if (candidateMetrics != null) {
+                // the previous candidate was rejected
+                candidateSeed = candidateSeeds.nextLong();
+            }
+            SplittableRandom random = new SplittableRandom(candidateSeed);
             int placedMineNum = 0;
             int randRow, randCol;
             // initialize the map except for first clicked button
@@ -128,32 +448,68 @@ public class MineBoard {
             probedSquareNumber = 1;
             clickedSquare.setSelected(true);
             clickedSquare.setEnabled(false);
+            Arrays.fill(candidateMines, false);
+            Arrays.fill(candidateMineCounts, (byte) 0);
             // randomly place mines
             while (placedMineNum < mineNumber) {
-                randRow = (int) (Math.random() * gridRow);
-                randCol = (int) (Math.random() * gridColumn);
+                randRow = random.nextInt(gridRow);
+                randCol = random.nextInt(gridColumn);
                 if (!(randRow >= position[0] - 1 && randRow <= position[0] + 1
                     && randCol >= position[1] - 1 && randCol <= position[1] + 1)
                     && !squares[randRow][randCol].isMine()) {
                     //make sure not to place mines around or at the clicked square which causes guessing
                     squares[randRow][randCol].setMine(true);
+                    placeCandidateMine(randRow, randCol);
                     placedMineNum++;
                 }
             }
+            // metrics are cheap, so reject candidates out of range before solving them
+            candidateMetrics = BoardMetrics.measure(gridRow, gridColumn, candidateMines, candidateMineCounts);
+            if (replaying) {
+                break;
+            }
+            if (minimumMetrics != null && !candidateMetrics.isWithin(minimumMetrics, maximumMetrics)) {
+                metricRejectionNumber++;
+                continue;
+            }
+            int filter = layoutFilter.check(candidateMines, candidateMineCounts, position[0] * gridColumn + position[1]);
+            if (filter != LayoutFilter.NONE) {
+                filterRejectionNumbers[filter]++;
+                continue;
+            }
             // check whether is solvable without guessing
-            isSolvable = solver.isSolvable(this, position[0] * gridColumn + position[1]);
+            solveNumber++;
+            SolveResult result = solver.solve(this, position[0] * gridColumn + position[1], solveBudget);
+            if (result == SolveResult.BUDGET_EXHAUSTED) {
+                budgetExhaustionNumber++;
+            }
+            isSolvable = result == SolveResult.SOLVABLE;
         }
-        // clear solver's operation
+        seed = candidateSeed;
+        metrics = candidateMetrics;
+        clickedSquareIndex = position[0] * gridColumn + position[1];
+        clearSolverOperation(clickedSquareIndex);
         for (int row = 0; row < gridRow; row++) {
             for (int col = 0; col < gridColumn; col++) {
-                if (!(row == position[0] && col == position[1])) {
-                    squares[row][col].setEnabled(true);
-                    squares[row][col].setFlagged(false);
+                if (squares[row][col].isMine()) {
+                    state.set(row * gridColumn + col, BoardState.MINE);
                 }
             }
         }
     }
 
+    /**
+     * Record a mine of the candidate and count it for the squares around
+     */
+    private void placeCandidateMine(int row, int col) {
+        candidateMines[row * gridColumn + col] = true;
+        for (int r = Math.max(0, row - 1); r <= Math.min(gridRow - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(gridColumn - 1, col + 1); c++) {
+                candidateMineCounts[r * gridColumn + c]++;
+            }
+        }
+    }
+
     public boolean isClear() {
         return boardClear;
     }
@@ -231,40 +587,14 @@ public class MineBoard {
             //generate map after the first square is pressed
             generateSolvableMap(square);
         }
+        int[] position = square.getPosition();
+        state.add(position[0] * gridColumn + position[1], BoardState.PROBED);
         if (square.isMine()) {
             boardExplode = true;
             square.setDisabledIcon(mineIcon);
         } else {
             byte mineCount = countNeighor(square, COUNT_NEIGHBOR_MINE);
-            switch (mineCount) {
-                case(0) :
-                    square.setDisabledIcon(zeroIcon);
-                    break;
-                case(1) : 
-                    square.setDisabledIcon(oneIcon);
-                    break;
-                case(2) : 
-                    square.setDisabledIcon(twoIcon);
-                    break;
-                case(3) : 
-                    square.setDisabledIcon(threeIcon);
-                    break;
-                case(4) : 
-                    square.setDisabledIcon(fourIcon);
-                    break;
-                case(5) : 
-                    square.setDisabledIcon(fiveIcon);
-                    break;
-                case(6) : 
-                    square.setDisabledIcon(sixIcon);
-                    break;
-                case(7) : 
-                    square.setDisabledIcon(sevenIcon);
-                    break;
-                case(8) : 
-                    square.setDisabledIcon(eightIcon);
-                    break;
-            }
+            setNumberIcon(square, mineCount);
             if (probedSquareNumber + mineNumber == gridRow * gridColumn) {
                 boardClear = true;
             } else if (mineCount == 0) {
@@ -274,6 +604,43 @@ public class MineBoard {
         }
     }
 
+    /**
+     * Show the number of neighbor mines on a probed square
+     * @param square The probed square
+     * @param mineCount number of mines around the square
+     */
+    private void setNumberIcon(SquareButton square, byte mineCount) {
+        switch (mineCount) {
+            case(0) :
+                square.setDisabledIcon(zeroIcon);
+                break;
+            case(1) : 
+                square.setDisabledIcon(oneIcon);
+                break;
+            case(2) : 
+                square.setDisabledIcon(twoIcon);
+                break;
+            case(3) : 
+                square.setDisabledIcon(threeIcon);
+                break;
+            case(4) : 
+                square.setDisabledIcon(fourIcon);
+                break;
+            case(5) : 
+                square.setDisabledIcon(fiveIcon);
+                break;
+            case(6) : 
+                square.setDisabledIcon(sixIcon);
+                break;
+            case(7) : 
+                square.setDisabledIcon(sevenIcon);
+                break;
+            case(8) : 
+                square.setDisabledIcon(eightIcon);
+                break;
+        }
+    }
+
     /**
      * Flag the square
      * @param square The square to be flagged
@@ -281,6 +648,9 @@ public class MineBoard {
     public void flag(SquareButton square) {
         square.setFlagged(true);
         square.setDisabledIcon(flagIcon);
+        int[] position = square.getPosition();
+        state.add(position[0] * gridColumn + position[1], BoardState.FLAGGED);
+        flaggedSquareNumber++;
     }
 
     /**
@@ -289,6 +659,9 @@ public class MineBoard {
      */
     public void unflag(SquareButton square) {
         square.setFlagged(false);
+        int[] position = square.getPosition();
+        state.remove(position[0] * gridColumn + position[1], BoardState.FLAGGED);
+        flaggedSquareNumber--;
     }
 
     /**
@@ -1,5 +1,10 @@
 import java.awt.*;
+import java.awt.datatransfer.StringSelection;
 import java.awt.event.*;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.swing.*;
 import javax.swing.event.*;
 
@@ -28,6 +33,33 @@ public class Minesweeper {
     private int time;
     private Timer timer;
 
+    private ArrayDeque<MineBoard.Snapshot> undoSnapshots = new ArrayDeque<MineBoard.Snapshot>();
+    private ArrayDeque<MineBoard.Snapshot> redoSnapshots = new ArrayDeque<MineBoard.Snapshot>();
+
+    private SpectatorServer spectatorServer;
+
+    // boards of recently played sizes, kept to switch back to them without creating squares again
+    private final static int MAX_POOLED_BOARDS = 4;
+    private final LinkedHashMap<Long, BoardView> boardViews = new LinkedHashMap<Long, BoardView>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BoardView> eldest) {
+            return size() > MAX_POOLED_BOARDS;
+        }
+    };
+
+    /**
+     * A board and the panel showing its squares
+     */
+    private static class BoardView {
+        private final MineBoard mineBoard;
+        private final JPanel boardPanel;
+
+        private BoardView(MineBoard mineBoard, JPanel boardPanel) {
+            this.mineBoard = mineBoard;
+            this.boardPanel = boardPanel;
+        }
+    }
+
     private boolean firstClicked = false;
     private boolean leftClickState = false;
     private boolean rightClickState = false;
@@ -67,6 +99,32 @@ public class Minesweeper {
         difficultyMenu.add(intermediateItem);
         difficultyMenu.add(expertItem);
         menuBar.add(difficultyMenu);
+
+        JMenu editMenu = new JMenu("Edit");
+        JMenuItem undoItem = new JMenuItem("Undo");
+        JMenuItem redoItem = new JMenuItem("Redo");
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        undoItem.addActionListener((event) -> undo());
+        redoItem.addActionListener((event) -> redo());
+        editMenu.add(undoItem);
+        editMenu.add(redoItem);
+        menuBar.add(editMenu);
+
+        JMenu shareMenu = new JMenu("Share");
+        JMenuItem copyCodeItem = new JMenuItem("Copy Share Code");
+        JMenuItem loadCodeItem = new JMenuItem("Load Share Code");
+        copyCodeItem.addActionListener((event) -> copyShareCode());
+        loadCodeItem.addActionListener((event) -> loadShareCode());
+        shareMenu.add(copyCodeItem);
+        shareMenu.add(loadCodeItem);
+        menuBar.add(shareMenu);
+
+        JMenu spectateMenu = new JMenu("Spectate");
+        JMenuItem streamItem = new JMenuItem("Start Spectator Server");
+        streamItem.addActionListener((event) -> startSpectatorServer());
+        spectateMenu.add(streamItem);
+        menuBar.add(spectateMenu);
         frame.setJMenuBar(menuBar);
 
         mainPanel = new JPanel();
@@ -107,9 +165,16 @@ public class Minesweeper {
     }
 
     /**
-     * set up the board panel
+     * set up the board panel, reusing the one of the same size if it is pooled
      */
     public void setUpBoardPanel() {
+        long key = ((long) gridRow << 40) | ((long) gridColumn << 20) | mineNumber;
+        BoardView boardView = boardViews.get(key);
+        if (boardView != null) {
+            mineBoard = boardView.mineBoard;
+            boardPanel = boardView.boardPanel;
+            return;
+        }
         boardPanel = new JPanel(new GridLayout(gridRow, gridColumn));
         mineBoard = new MineBoard(gridRow, gridColumn, mineNumber);
         for (int row = 0; row < gridRow; row++) {
@@ -135,6 +200,7 @@ public class Minesweeper {
                     public void mousePressed(MouseEvent event) {
                         if (SwingUtilities.isLeftMouseButton(event)) leftClickState = true;
                         else if (SwingUtilities.isRightMouseButton(event)) rightClickState = true;
+                        MineBoard.Snapshot snapshot = mineBoard.snapshot();
 
                         // if both buttons hold at the same time
                         if (leftClickState && rightClickState) {
@@ -173,28 +239,170 @@ public class Minesweeper {
                                 restMineNumberLabel.setText(Integer.toString(restMineNumber));
                             }
                         }
+                        recordMove(snapshot);
+                        publishMove();
                     }
                 });
                 mineBoard.setSquare(row, col, square);
                 boardPanel.add(square);
             }
         }
+        boardViews.put(key, new BoardView(mineBoard, boardPanel));
     }
 
     /**
      * reset the board and restart
+     * The frame is only laid out again if the board panel changes
      */
     public void resetBoard() {
-        mainPanel.remove(boardPanel);
+        JPanel previousBoardPanel = boardPanel;
         setUpBoardPanel();
-        mainPanel.add(boardPanel);
-        mainPanel.revalidate();
-        frame.pack();
-        frame.revalidate();
+        if (boardPanel != previousBoardPanel) {
+            mainPanel.remove(previousBoardPanel);
+            mainPanel.add(boardPanel);
+            mainPanel.revalidate();
+            frame.pack();
+            frame.revalidate();
+        }
         restMineNumber = mineNumber;
         restart();
     }
 
+    /**
+     * Record the board before a move if the move changed it
+     * @param snapshot the board before the move
+     */
+    private void recordMove(MineBoard.Snapshot snapshot) {
+        if (!mineBoard.isUnchangedSince(snapshot)) {
+            undoSnapshots.push(snapshot);
+            redoSnapshots.clear();
+        }
+    }
+
+    /**
+     * Undo the last move
+     */
+    public void undo() {
+        if (undoSnapshots.isEmpty()) {
+            return;
+        }
+        redoSnapshots.push(mineBoard.snapshot());
+        mineBoard.restore(undoSnapshots.pop());
+        syncWithBoard();
+        publishMove();
+    }
+
+    /**
+     * Redo the last undone move
+     */
+    public void redo() {
+        if (redoSnapshots.isEmpty()) {
+            return;
+        }
+        undoSnapshots.push(mineBoard.snapshot());
+        mineBoard.restore(redoSnapshots.pop());
+        syncWithBoard();
+        publishMove();
+    }
+
+    /**
+     * Update labels and timer after the board is restored
+     */
+    private void syncWithBoard() {
+        restMineNumber = mineNumber - mineBoard.getFlaggedSquareNumber();
+        restMineNumberLabel.setText(Integer.toString(restMineNumber));
+        if (mineBoard.isClear() || mineBoard.isFailed()) {
+            gameOver(mineBoard.isClear());
+            return;
+        }
+        restartButton.setIcon(plainIcon);
+        if (mineBoard.getProbedSquareNumber() == 0) {
+            timer.stop();
+            time = 0;
+            firstClicked = false;
+            timerLabel.setText("000");
+        } else {
+            firstClicked = true;
+            timer.start();
+        }
+    }
+
+    /**
+     * Copy the code of current board to clipboard
+     */
+    public void copyShareCode() {
+        ShareCode shareCode = mineBoard.getShareCode();
+        if (shareCode == null) {
+            JOptionPane.showMessageDialog(frame, "Click a square to start a game first");
+            return;
+        }
+        String code = shareCode.encode();
+        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(code), null);
+        JOptionPane.showMessageDialog(frame, "Share code copied to clipboard:\n" + code);
+    }
+
+    /**
+     * Start the board of a share code
+     */
+    public void loadShareCode() {
+        String code = JOptionPane.showInputDialog(frame, "Share code");
+        if (code == null) {
+            return;
+        }
+        ShareCode shareCode;
+        try {
+            shareCode = ShareCode.decode(code);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(frame, "Invalid share code: " + e.getMessage());
+            return;
+        }
+        if (shareCode.getRow() != gridRow || shareCode.getColumn() != gridColumn
+            || shareCode.getMineNumber() != mineNumber) {
+            gridRow = shareCode.getRow();
+            gridColumn = shareCode.getColumn();
+            mineNumber = shareCode.getMineNumber();
+            resetBoard();
+        } else {
+            restart();
+        }
+        int index = shareCode.getClickedSquareIndex();
+        mineBoard.setSeed(shareCode.getSeed());
+        mineBoard.probe(mineBoard.getSquare(index / gridColumn, index % gridColumn));
+        firstClicked = true;
+        // the first probe opens the whole of a small or sparse board
+        if (mineBoard.isClear() || mineBoard.isFailed()) {
+            gameOver(mineBoard.isClear());
+        } else {
+            timer.start();
+        }
+        publishMove();
+    }
+
+    /**
+     * Start streaming moves to local spectators
+     */
+    public void startSpectatorServer() {
+        if (spectatorServer == null) {
+            try {
+                spectatorServer = new SpectatorServer(SpectatorServer.DEFAULT_PORT);
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(frame, "Cannot start spectator server: " + e.getMessage());
+                return;
+            }
+            publishMove();
+        }
+        JOptionPane.showMessageDialog(frame, "Spectators can connect to port " + spectatorServer.getPort());
+    }
+
+    /**
+     * Send squares changed by the last move to spectators
+     */
+    private void publishMove() {
+        if (spectatorServer != null) {
+            spectatorServer.publish(mineBoard);
+        }
+    }
+
     public void loadImages() {
         plainIcon = MineBoard.getScaledImageIcon(25, 25, "./images/plain.png");
         winIcon = MineBoard.getScaledImageIcon(25, 25, "./images/win.png");
@@ -224,7 +432,10 @@ public class Minesweeper {
 
         restartButton.setIcon(plainIcon);
 
+        undoSnapshots.clear();
+        redoSnapshots.clear();
         mineBoard.initialize();
+        publishMove();
     }
 
     /**
@@ -6,6 +6,8 @@ import java.util.*;
  * @author purindaisuki
  */
 public class SPwCSPSolver {
+    // number of decomposed constraints between checks of the budget
+    private final static int BUDGET_CHECK_INTERVAL = 64;
 
     private SPwCSPSolver() {}
 
@@ -118,6 +120,36 @@ public class SPwCSPSolver {
         }
     }
 
+    // state of the board being solved
+    private MineBoard mineBoard;
+    private int gridRow, gridColumn, mineNumber;
+    private int totalFlagCount;
+    private int totalProbedSqauresCount;
+    // set of squares which can provide information to probe other squares
+    private HashSet<Integer> frontierSquares;
+    // constraints kept for the whole solve, updated only where squares are solved
+    private HashSet<Constraints> constraintsSet;
+    // constraints containing each covered square
+    private HashMap<Integer, HashSet<Constraints>> constraintsOfSquare;
+    // squares solved and squares probed since the constraints were last updated
+    private ArrayList<Integer> resolvedSquares;
+    private ArrayList<Integer> probedSquares;
+    // constraints not yet decomposed against their overlapping ones
+    private ArrayDeque<Constraints> constraintsToDecompose;
+    // constraints of All-Free-Neighbor or All-Mine-Neighbor not yet solved
+    private ArrayList<Constraints> trivialConstraints;
+    // matrix kept reduced for the whole solve, and what it has not seen yet
+    private ConstraintMatrix matrix;
+    private ArrayList<Constraints> constraintsToEliminate;
+    private ArrayList<Integer> squaresToFix;
+    // limits on the solve and the work done so far
+    private SolveBudget budget = SolveBudget.UNLIMITED;
+    private long startTime;
+    private int stepNumber;
+    // squares and constraints visited so far, a measure of work not depending on timing
+    private long workNumber;
+    private boolean budgetExhausted;
+
     /**
      * Check whether the board is solvable by Single Point method and CSP Strategy
      * @param mineBoard the board to be solve
@@ -125,127 +157,390 @@ public class SPwCSPSolver {
      * @return whether the board is solvable
      */
     public boolean isSolvable(MineBoard mineBoard, int clickedSquareIndex) {
-        int gridRow = mineBoard.getRow();
-        int gridColumn = mineBoard.getColumn();
-        int mineNumber = mineBoard.getMineNumber();
-        boolean mapUpdated = false;
-        int totalFlagCount = 0;
-        int totalProbedSqauresCount = 1; // include the first clicked one
-
-        HashSet<Integer> frontierSquares = new HashSet<Integer>(2 * (gridRow + gridColumn));
-        // set of squares which can provide information to probe other squares
-        frontierSquares.add(clickedSquareIndex);
+        return solve(mineBoard, clickedSquareIndex, SolveBudget.UNLIMITED) == SolveResult.SOLVABLE;
+    }
 
-        while (!(mineNumber == totalFlagCount 
-                || gridColumn * gridRow - totalProbedSqauresCount == mineNumber)) {
-            mapUpdated = false;
-            Integer[] keyList = frontierSquares.toArray(new Integer[0]);
-            for (int key : keyList) {
-                int row = (int) (key / gridColumn);
-                int col = key % gridColumn;
-                SquareButton square = mineBoard.getSquare(row, col);
-                byte unprobedCount = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_UNPROBED);
-                byte mineCount = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_MINE);
-                byte flagCount = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_FLAG);
-                if (mineCount == unprobedCount + flagCount || mineCount == flagCount) {
-                    frontierSquares.remove(key);
-                    for (SquareButton neighbor : mineBoard.getNeighbors(square)){
-                        if (neighbor.isEnabled()) {
-                            neighbor.setEnabled(false);
-                            if (mineCount != flagCount) {
-                                neighbor.setFlagged(true);
-                                totalFlagCount++;
-                            } else {
-                                int[] position = neighbor.getPosition();
-                                frontierSquares.add(position[0] * gridColumn + position[1]);
-                                totalProbedSqauresCount++;
-                            }
-                        }
-                    }
-                    mapUpdated = true;
-                    break;
-                }
+    /**
+     * Check whether the board is solvable within a budget
+     * @param mineBoard the board to be solve
+     * @param clickedSquareIndex the index of first clicked square
+     * @param budget limits on the solve
+     * @return the result, BUDGET_EXHAUSTED if the solve was given up
+     */
+    public SolveResult solve(MineBoard mineBoard, int clickedSquareIndex, SolveBudget budget) {
+        start(mineBoard, clickedSquareIndex, budget);
+        while (!isSolved()) {
+            if (isBudgetExhausted()) {
+                return SolveResult.BUDGET_EXHAUSTED;
             }
-            if (mapUpdated) {
+            if (singlePointStep()) {
                 // if SP sucesses, keep using it since it's faster than CSP
                 continue;
             }
-
             //if SP fails, use CSP
-            HashSet<Constraints> constraintsSet = new HashSet<Constraints>(2 * (gridRow + gridColumn));
-            // generate constraints from info provided by frontier squares
-            for (int key : keyList) {
-                int row = (int) (key / gridColumn);
-                int col = key % gridColumn;
-                SquareButton square = mineBoard.getSquare(row, col);
-                byte mineCount = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_MINE);
-                byte flagCount = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_FLAG);
-                Constraints squareConstraints = new Constraints((byte) (mineCount - flagCount));
-                for (SquareButton neighbor : mineBoard.getNeighbors(square)) {
+            if (subsetStep()) {
+                continue;
+            }
+            // if subset decomposition fails, combine all constraints by elimination
+            if (!eliminationStep()) {
+                // if SP, CSP and elimination all fail, return unsolvable
+                // unless elimination was cut short by the budget
+                return isBudgetExhausted() ? SolveResult.BUDGET_EXHAUSTED : SolveResult.UNSOLVABLE;
+            }
+        }
+        return SolveResult.SOLVABLE;
+    }
+
+    /**
+     * Start solving a board from the first clicked square
+     * @param mineBoard the board to be solve
+     * @param clickedSquareIndex the index of first clicked square
+     * @param budget limits on the solve
+     */
+    void start(MineBoard mineBoard, int clickedSquareIndex, SolveBudget budget) {
+        this.budget = budget;
+        startTime = System.nanoTime();
+        stepNumber = 0;
+        workNumber = 0;
+        budgetExhausted = false;
+        this.mineBoard = mineBoard;
+        gridRow = mineBoard.getRow();
+        gridColumn = mineBoard.getColumn();
+        mineNumber = mineBoard.getMineNumber();
+        totalFlagCount = 0;
+        totalProbedSqauresCount = 1; // include the first clicked one
+        frontierSquares = new HashSet<Integer>(2 * (gridRow + gridColumn));
+        frontierSquares.add(clickedSquareIndex);
+        constraintsSet = new HashSet<Constraints>(2 * (gridRow + gridColumn));
+        constraintsOfSquare = new HashMap<Integer, HashSet<Constraints>>(4 * (gridRow + gridColumn));
+        resolvedSquares = new ArrayList<Integer>();
+        probedSquares = new ArrayList<Integer>();
+        probedSquares.add(clickedSquareIndex);
+        constraintsToDecompose = new ArrayDeque<Constraints>();
+        trivialConstraints = new ArrayList<Constraints>();
+        matrix = new ConstraintMatrix();
+        constraintsToEliminate = new ArrayList<Constraints>();
+        squaresToFix = new ArrayList<Integer>();
+    }
+
+    /**
+     * Return whether the solve went over its budget
+     * Steps stop early once it did, so a solve has to be given up then
+     */
+    boolean isBudgetExhausted() {
+        if (!budgetExhausted) {
+            budgetExhausted = stepNumber > budget.getMaxSteps()
+                || constraintsSet.size() > budget.getMaxConstraints()
+                || workNumber > budget.getMaxWork()
+                || System.nanoTime() - startTime > budget.getMaxNanos();
+        }
+        return budgetExhausted;
+    }
+
+    boolean isSolved() {
+        return mineNumber == totalFlagCount
+            || gridColumn * gridRow - totalProbedSqauresCount == mineNumber;
+    }
+
+    /**
+     * Get number of squares solved so far, which only grows while solving
+     */
+    int getProgress() {
+        return totalFlagCount + totalProbedSqauresCount;
+    }
+
+    long getWorkNumber() {
+        return workNumber;
+    }
+
+    int getFrontierSize() {
+        return frontierSquares.size();
+    }
+
+    int getCoveredNumber() {
+        return gridColumn * gridRow - totalProbedSqauresCount - totalFlagCount;
+    }
+
+    int getRestMineNumber() {
+        return mineNumber - totalFlagCount;
+    }
+
+    /**
+     * Solve neighbors of the first frontier square which is All-Free-Neighbor or All-Mine-Neighbor
+     * @return whether any square is solved
+     */
+    boolean singlePointStep() {
+        stepNumber++;
+        Integer[] keyList = frontierSquares.toArray(new Integer[0]);
+        // copying the frontier costs as much as visiting it
+        workNumber += keyList.length;
+        for (int key : keyList) {
+            workNumber++;
+            int row = (int) (key / gridColumn);
+            int col = key % gridColumn;
+            SquareButton square = mineBoard.getSquare(row, col);
+            byte unprobedCount = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_UNPROBED);
+            byte mineCount = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_MINE);
+            byte flagCount = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_FLAG);
+            if (mineCount == unprobedCount + flagCount || mineCount == flagCount) {
+                frontierSquares.remove(key);
+                for (SquareButton neighbor : mineBoard.getNeighbors(square)){
                     if (neighbor.isEnabled()) {
                         int[] position = neighbor.getPosition();
-                        int index = position[0] * gridColumn + position[1];
-                        squareConstraints.add(index);
+                        resolve(position[0] * gridColumn + position[1], mineCount != flagCount);
                     }
                 }
-                if (!squareConstraints.isEmpty()) {
-                    constraintsSet.add(squareConstraints);
-                }
+                return true;
             }
-            // decompose constraints according to their overlaps and differences
-            boolean constraintsSetUpdated = true;
-            while (constraintsSetUpdated) {
-                constraintsSetUpdated = false;
-                Constraints[] constraintsList = constraintsSet.toArray(new Constraints[0]);
-                for (Constraints constraints1 : constraintsList) {
-                    for (Constraints constraints2 : constraintsList) {
-                        if (!constraints1.equals(constraints2)) {
-                            // if constraints1 is included in constraints2
-                            if (isProperSubset(constraints1, constraints2)) {
-                                Constraints diffConstraints = new Constraints();
-                                for (int entry2 : constraints2) {
-                                    if (!constraints1.contains(entry2)) {
-                                        diffConstraints.add(entry2);
-                                    }
-                                }
-                                // decompose the constraint
-                                byte diffMineNumber = (byte) (constraints2.getMineNumber() - constraints1.getMineNumber());
-                                diffConstraints.setMineNumber(diffMineNumber);
-                                constraintsSetUpdated = constraintsSet.add(diffConstraints);
-                                constraintsSet.remove(constraints2);
+        }
+        return false;
+    }
+
+    /**
+     * Sweep all frontier squares like DSSP, checking squares next to newly solved ones
+     * right away through a queue, until single point finds nothing more
+     * @return whether any square is solved
+     */
+    boolean batchedProbeStep() {
+        stepNumber++;
+        boolean mapUpdated = false;
+        ArrayDeque<Integer> squaresToCheck = new ArrayDeque<Integer>(frontierSquares);
+        while (!squaresToCheck.isEmpty()) {
+            int key = squaresToCheck.poll();
+            if (!frontierSquares.contains(key)) {
+                continue;
+            }
+            workNumber++;
+            SquareButton square = mineBoard.getSquare(key / gridColumn, key % gridColumn);
+            byte unprobedCount = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_UNPROBED);
+            byte mineCount = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_MINE);
+            byte flagCount = mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_FLAG);
+            if (mineCount == unprobedCount + flagCount || mineCount == flagCount) {
+                frontierSquares.remove(key);
+                for (SquareButton neighbor : mineBoard.getNeighbors(square)) {
+                    if (neighbor.isEnabled()) {
+                        int[] position = neighbor.getPosition();
+                        resolve(position[0] * gridColumn + position[1], mineCount != flagCount);
+                        // squares around a solved square may become AFN or AMN
+                        for (SquareButton affected : mineBoard.getNeighbors(neighbor)) {
+                            int[] affectedPosition = affected.getPosition();
+                            int affectedIndex = affectedPosition[0] * gridColumn + affectedPosition[1];
+                            if (frontierSquares.contains(affectedIndex)) {
+                                squaresToCheck.add(affectedIndex);
                             }
                         }
                     }
                 }
+                mapUpdated = true;
             }
-            // solve variables if All-Free-Neighbor or All-Mine-Neighbor
-            for (Constraints constraints : constraintsSet) {
-                byte mines = constraints.getMineNumber();
-                if (mines == 0 || mines == constraints.size()) {
-                    for (int squareIndex : constraints) {
-                        int row = (int) (squareIndex / gridColumn);
-                        int col = squareIndex % gridColumn;
-                        SquareButton square = mineBoard.getSquare(row, col);
-                        if (square.isEnabled()){
-                            square.setEnabled(false);
-                            if (mines == 0) {
-                                // if AFN
-                                frontierSquares.add(squareIndex);
-                                totalProbedSqauresCount++;
-                            } else {
-                                // if AMN
-                                square.setFlagged(true);
-                                totalFlagCount++;
-                            }
-                        }
+        }
+        return mapUpdated;
+    }
+
+    /**
+     * Update constraints with squares solved since the last call
+     * and decompose the changed ones, then solve squares of All-Free-Neighbor or All-Mine-Neighbor constraints
+     * @return whether any square is solved
+     */
+    boolean subsetStep() {
+        stepNumber++;
+        boolean mapUpdated = false;
+        updateConstraints();
+        decomposeConstraints();
+        // solve variables if All-Free-Neighbor or All-Mine-Neighbor
+        Constraints[] constraintsList = trivialConstraints.toArray(new Constraints[0]);
+        trivialConstraints.clear();
+        for (Constraints constraints : constraintsList) {
+            if (!constraintsSet.contains(constraints)) {
+                // replaced since some of its squares were solved
+                continue;
+            }
+            for (int squareIndex : constraints) {
+                // AFN if no mine, otherwise AMN
+                mapUpdated |= resolve(squareIndex, constraints.getMineNumber() != 0);
+            }
+        }
+        return mapUpdated;
+    }
+
+    /**
+     * Combine all constraints by Gaussian elimination and solve squares fixed by bounds
+     * The matrix stays reduced between calls, so only constraints added
+     * and squares solved since the last call are put into it
+     * @return whether any square is solved
+     */
+    boolean eliminationStep() {
+        stepNumber++;
+        if (isBudgetExhausted()) {
+            return false;
+        }
+        updateConstraints();
+        boolean mapUpdated = false;
+        // constraints replaced since are the same rows once solved squares are substituted
+        for (int squareIndex : squaresToFix) {
+            matrix.fixSquare(squareIndex, getSquare(squareIndex).isFlagged());
+        }
+        squaresToFix.clear();
+        for (Constraints constraints : constraintsToEliminate) {
+            if (constraintsSet.contains(constraints)) {
+                matrix.addConstraint(constraints, constraints.getMineNumber());
+            }
+        }
+        constraintsToEliminate.clear();
+        // elimination touches every pair of rows at worst
+        workNumber += (long) matrix.getRowNumber() * matrix.getRowNumber();
+        if (isBudgetExhausted()) {
+            return false;
+        }
+        for (Map.Entry<Integer, Boolean> entry : matrix.solve().entrySet()) {
+            mapUpdated |= resolve(entry.getKey(), entry.getValue());
+        }
+        return mapUpdated;
+    }
+
+    /**
+     * Remove solved squares from the constraints containing them
+     * and add constraints of newly probed squares
+     */
+    private void updateConstraints() {
+        for (int squareIndex : resolvedSquares) {
+            HashSet<Constraints> containing = constraintsOfSquare.remove(squareIndex);
+            if (containing == null) {
+                continue;
+            }
+            byte mine = (byte) (getSquare(squareIndex).isFlagged() ? 1 : 0);
+            for (Constraints constraints : containing) {
+                removeConstraints(constraints);
+                Constraints reducedConstraints = new Constraints((byte) (constraints.getMineNumber() - mine));
+                for (int index : constraints) {
+                    if (index != squareIndex) {
+                        reducedConstraints.add(index);
                     }
-                    mapUpdated = true;
                 }
+                addConstraints(reducedConstraints);
             }
-            if (!mapUpdated) {
-                // if both SP and CSP fail, return unsolvable
-                return false;
+        }
+        resolvedSquares.clear();
+        // constraints of probed squares are built from the current board, so they are up to date
+        for (int key : probedSquares) {
+            if (!frontierSquares.contains(key)) {
+                // single point already solved all its neighbors
+                continue;
             }
+            // one pass over the neighbors instead of counting mines and flags separately
+            Constraints squareConstraints = new Constraints();
+            byte mines = 0;
+            for (SquareButton neighbor : mineBoard.getNeighbors(getSquare(key))) {
+                if (neighbor.isMine()) {
+                    mines++;
+                }
+                if (neighbor.isFlagged()) {
+                    mines--;
+                } else if (neighbor.isEnabled()) {
+                    int[] position = neighbor.getPosition();
+                    squareConstraints.add(position[0] * gridColumn + position[1]);
+                }
+            }
+            squareConstraints.setMineNumber(mines);
+            addConstraints(squareConstraints);
+        }
+        probedSquares.clear();
+    }
+
+    /**
+     * Decompose changed constraints against the constraints overlapping them
+     * If one is a proper subset of another, their difference is added as a new constraint.
+     * The larger one is kept since it may still contain other constraints
+     */
+    private void decomposeConstraints() {
+        int decomposedNumber = 0;
+        while (!constraintsToDecompose.isEmpty()) {
+            if (++decomposedNumber % BUDGET_CHECK_INTERVAL == 0 && isBudgetExhausted()) {
+                // dense frontiers can keep decomposing for long, stop with what is derived so far
+                return;
+            }
+            Constraints constraints1 = constraintsToDecompose.poll();
+            if (!constraintsSet.contains(constraints1)) {
+                // replaced while updating squares solved one after another
+                continue;
+            }
+            // constraints sharing several squares are checked more than once, which is cheaper than deduplicating
+            ArrayList<Constraints> overlapping = new ArrayList<Constraints>();
+            for (int squareIndex : constraints1) {
+                overlapping.addAll(constraintsOfSquare.get(squareIndex));
+            }
+            workNumber += overlapping.size();
+            for (Constraints constraints2 : overlapping) {
+                if (constraints1.size() < constraints2.size() && isProperSubset(constraints1, constraints2)) {
+                    addConstraints(difference(constraints2, constraints1));
+                } else if (constraints2.size() < constraints1.size() && isProperSubset(constraints2, constraints1)) {
+                    addConstraints(difference(constraints1, constraints2));
+                }
+            }
+        }
+    }
+
+    private Constraints difference(Constraints constraints, Constraints subset) {
+        Constraints diffConstraints = new Constraints((byte) (constraints.getMineNumber() - subset.getMineNumber()));
+        for (int entry : constraints) {
+            if (!subset.contains(entry)) {
+                diffConstraints.add(entry);
+            }
+        }
+        return diffConstraints;
+    }
+
+    private void addConstraints(Constraints constraints) {
+        workNumber++;
+        if (constraints.isEmpty() || !constraintsSet.add(constraints)) {
+            return;
+        }
+        for (int squareIndex : constraints) {
+            constraintsOfSquare.computeIfAbsent(squareIndex, k -> new HashSet<Constraints>()).add(constraints);
+        }
+        constraintsToDecompose.add(constraints);
+        constraintsToEliminate.add(constraints);
+        byte mines = constraints.getMineNumber();
+        if (mines == 0 || mines == constraints.size()) {
+            trivialConstraints.add(constraints);
+        }
+    }
+
+    private void removeConstraints(Constraints constraints) {
+        constraintsSet.remove(constraints);
+        for (int squareIndex : constraints) {
+            HashSet<Constraints> containing = constraintsOfSquare.get(squareIndex);
+            if (containing != null) {
+                containing.remove(constraints);
+            }
+        }
+    }
+
+    private SquareButton getSquare(int squareIndex) {
+        return mineBoard.getSquare(squareIndex / gridColumn, squareIndex % gridColumn);
+    }
+
+    /**
+     * Probe or flag a covered square
+     * @param squareIndex index of the square
+     * @param mine whether the square is a mine
+     * @return false if the square is already solved
+     */
+    boolean resolve(int squareIndex, boolean mine) {
+        SquareButton square = getSquare(squareIndex);
+        if (!square.isEnabled()) {
+            return false;
+        }
+        square.setEnabled(false);
+        resolvedSquares.add(squareIndex);
+        squaresToFix.add(squareIndex);
+        if (mine) {
+            square.setFlagged(true);
+            totalFlagCount++;
+        } else {
+            frontierSquares.add(squareIndex);
+            probedSquares.add(squareIndex);
+            totalProbedSqauresCount++;
         }
         return true;
     }
@@ -0,0 +1,118 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * A short code which reproduces a board
+ * A board is determined by its seed, size, mine number and first clicked square
+ */
+public class ShareCode {
+    // largest board a code may describe, as custom boards of the classic game
+    public final static int MAX_ROW = 24;
+    public final static int MAX_COLUMN = 30;
+
+    private final long seed;
+    private final int row;
+    private final int column;
+    private final int mineNumber;
+    private final int clickedSquareIndex;
+
+    public ShareCode(long seed, int row, int column, int mineNumber, int clickedSquareIndex) {
+        this.seed = seed;
+        this.row = row;
+        this.column = column;
+        this.mineNumber = mineNumber;
+        this.clickedSquareIndex = clickedSquareIndex;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public int getMineNumber() {
+        return mineNumber;
+    }
+
+    public int getClickedSquareIndex() {
+        return clickedSquareIndex;
+    }
+
+    /**
+     * Encode the board as varints followed by the seed, in url-safe base64
+     * @return the code
+     */
+    public String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeVarint(bytes, row);
+        writeVarint(bytes, column);
+        writeVarint(bytes, mineNumber);
+        writeVarint(bytes, clickedSquareIndex);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytes.write((int) (seed >>> shift));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Decode a code made by encode
+     * @param code the code
+     * @return the decoded share code
+     * @throws IllegalArgumentException if the code is malformed or describes a board out of range
+     */
+    public static ShareCode decode(String code) {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(Base64.getUrlDecoder().decode(code.trim()));
+        int row = readVarint(bytes);
+        int column = readVarint(bytes);
+        int mineNumber = readVarint(bytes);
+        int clickedSquareIndex = readVarint(bytes);
+        if (bytes.available() != 8) {
+            throw new IllegalArgumentException("malformed share code");
+        }
+        long seed = 0;
+        for (int i = 0; i < 8; i++) {
+            seed = seed << 8 | bytes.read();
+        }
+        if (row <= 0 || row > MAX_ROW || column <= 0 || column > MAX_COLUMN) {
+            throw new IllegalArgumentException("board size out of range");
+        }
+        int squareNumber = Math.multiplyExact(row, column);
+        // no mine is placed around the first clicked square
+        if (mineNumber < 0 || mineNumber > squareNumber - 9) {
+            throw new IllegalArgumentException("mine number out of range");
+        }
+        if (clickedSquareIndex < 0 || clickedSquareIndex >= squareNumber) {
+            throw new IllegalArgumentException("clicked square out of range");
+        }
+        return new ShareCode(seed, row, column, mineNumber, clickedSquareIndex);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream bytes, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes.write(value);
+    }
+
+    private static int readVarint(ByteArrayInputStream bytes) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = bytes.read();
+            if (b < 0) {
+                throw new IllegalArgumentException("malformed share code");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed share code");
+    }
+}
@@ -0,0 +1,429 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Exhaustive count of the layouts of a small board each solver solves, for every first click
+ * Layouts are numbered in colexicographic order by the combinatorial number system,
+ * so any range of them can be enumerated on its own. Only the layout with the lowest rank
+ * among its images under the grid symmetries is solved, and the result is counted for every image.
+ * SPwCSPSolver may solve a layout but not its mirror image, so it alone is run on every image.
+ * Ranges of layouts are split across cores by a work-stealing ForkJoinPool
+ * and finished ranges are checkpointed, so a stopped run resumes where it was
+ *
+ * A layout counts for a click only if no mine is at or around the clicked square,
+ * the same as generated boards
+ *
+ * Usage: java SolvabilityCensus row column mines [threads] [checkpoint file]
+ */
+public class SolvabilityCensus {
+    private final static String[] SOLVER_NAMES = {"SinglePoint", "DSSP", "SPwCSP", "BruteForce"};
+    // whether a solver gives the same result on every image of a layout,
+    // the others depend on the order of squares and are run on every image
+    private final static boolean[] SYMMETRIC = {true, true, false, true};
+    private final static int BLOCK_SIZE = 1 << 12;
+    private final static long CHECKPOINT_INTERVAL_MILLIS = 30000;
+    private final static int CHECKPOINT_VERSION = 1;
+
+    private final int row;
+    private final int column;
+    private final int squareNumber;
+    private final int mineNumber;
+    private final long[][] binomials;
+    private final long layoutNumber;
+    private final int blockNumber;
+    // where every square moves under each symmetry of the grid
+    private final int[][] symmetries;
+    // the clicked square and squares around it, which must have no mine
+    private final long[] clickAreas;
+
+    // results, guarded by this
+    private final BitSet finishedBlocks;
+    private final long[] validCounts;
+    private final long[][] solvedCounts;
+    private final long[] skippedCounts;
+    private final File checkpointFile;
+    private long lastCheckpointTime = System.currentTimeMillis();
+
+    // boards are reused per thread since creating squares is expensive
+    private final ThreadLocal<MineBoard> boards;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 3) {
+            System.out.println("Usage: java SolvabilityCensus row column mines [threads] [checkpoint file]");
+            return;
+        }
+        int row = Integer.parseInt(args[0]);
+        int column = Integer.parseInt(args[1]);
+        int mineNumber = Integer.parseInt(args[2]);
+        int threadNumber = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        File checkpointFile = args.length > 4 ? new File(args[4]) : null;
+        SolvabilityCensus census = new SolvabilityCensus(row, column, mineNumber, checkpointFile);
+        census.run(threadNumber);
+        census.printReport();
+    }
+
+    /**
+     * @param checkpointFile file to resume from and save progress to, or null for none
+     * @throws IllegalArgumentException if the board has more than 64 squares
+     * @throws IOException if the checkpoint cannot be read or belongs to another census
+     */
+    public SolvabilityCensus(int row, int column, int mineNumber, File checkpointFile) throws IOException {
+        if (row * column > 64) {
+            throw new IllegalArgumentException("layouts of more than 64 squares are not enumerable");
+        }
+        this.row = row;
+        this.column = column;
+        this.squareNumber = row * column;
+        this.mineNumber = mineNumber;
+        this.checkpointFile = checkpointFile;
+        binomials = new long[squareNumber + 1][mineNumber + 2];
+        for (int n = 0; n <= squareNumber; n++) {
+            binomials[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, mineNumber + 1); k++) {
+                binomials[n][k] = binomials[n - 1][k - 1] + (k < n ? binomials[n - 1][k] : 0);
+            }
+        }
+        layoutNumber = binomials[squareNumber][mineNumber];
+        if ((layoutNumber + BLOCK_SIZE - 1) / BLOCK_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many layouts");
+        }
+        blockNumber = (int) ((layoutNumber + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        symmetries = buildSymmetries();
+        clickAreas = new long[squareNumber];
+        for (int index = 0; index < squareNumber; index++) {
+            for (int r = Math.max(0, index / column - 1); r <= Math.min(row - 1, index / column + 1); r++) {
+                for (int c = Math.max(0, index % column - 1); c <= Math.min(column - 1, index % column + 1); c++) {
+                    clickAreas[index] |= 1L << (r * column + c);
+                }
+            }
+        }
+        finishedBlocks = new BitSet(blockNumber);
+        validCounts = new long[squareNumber];
+        solvedCounts = new long[squareNumber][SOLVER_NAMES.length];
+        skippedCounts = new long[squareNumber];
+        boards = ThreadLocal.withInitial(() -> {
+            MineBoard mineBoard = new MineBoard(row, column, mineNumber);
+            mineBoard.createSquares();
+            return mineBoard;
+        });
+        if (checkpointFile != null && checkpointFile.exists()) {
+            loadCheckpoint();
+        }
+    }
+
+    /**
+     * Solve all layouts of the blocks not finished yet
+     */
+    public void run(int threadNumber) throws IOException {
+        System.out.printf("%d layouts in %d blocks, %d blocks finished before%n",
+            layoutNumber, blockNumber, finishedBlocks.cardinality());
+        long startTime = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threadNumber);
+        try {
+            pool.invoke(new CensusTask(0, blockNumber));
+        } finally {
+            pool.shutdown();
+        }
+        saveCheckpoint();
+        System.out.printf("finished in %.1f s%n", (System.nanoTime() - startTime) / 1e9);
+    }
+
+    /**
+     * Blocks in a range, split in halves until single blocks so idle workers can steal them
+     */
+    private class CensusTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int fromBlock;
+        private final int toBlock;
+
+        private CensusTask(int fromBlock, int toBlock) {
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock > 1) {
+                int middleBlock = (fromBlock + toBlock) >>> 1;
+                invokeAll(new CensusTask(fromBlock, middleBlock), new CensusTask(middleBlock, toBlock));
+            } else if (!isFinished(fromBlock)) {
+                runBlock(fromBlock);
+            }
+        }
+    }
+
+    private synchronized boolean isFinished(int block) {
+        return finishedBlocks.get(block);
+    }
+
+    private void runBlock(int block) {
+        long[] blockValidCounts = new long[squareNumber];
+        long[][] blockSolvedCounts = new long[squareNumber][SOLVER_NAMES.length];
+        long[] blockSkippedCounts = new long[squareNumber];
+        boolean[] solved = new boolean[SOLVER_NAMES.length];
+        long[] images = new long[symmetries.length];
+        long rank = (long) block * BLOCK_SIZE;
+        long endRank = Math.min(layoutNumber, rank + BLOCK_SIZE);
+        long layout = unrank(rank);
+        for (; rank < endRank; rank++, layout = nextLayout(layout)) {
+            if (!isCanonical(layout, images)) {
+                continue;
+            }
+            for (int click = 0; click < squareNumber; click++) {
+                if ((layout & clickAreas[click]) != 0) {
+                    continue;
+                }
+                boolean skipped = !solve(layout, click, solved, true);
+                // count the result for every distinct image of the layout, with the click moved along
+                for (int g = 0; g < symmetries.length; g++) {
+                    if (isRepeatedImage(images, g)) {
+                        continue;
+                    }
+                    int imageClick = symmetries[g][click];
+                    if (g > 0) {
+                        solve(images[g], imageClick, solved, false);
+                    }
+                    blockValidCounts[imageClick]++;
+                    if (skipped) {
+                        blockSkippedCounts[imageClick]++;
+                    }
+                    for (int i = 0; i < solved.length; i++) {
+                        if (solved[i]) {
+                            blockSolvedCounts[imageClick][i]++;
+                        }
+                    }
+                }
+            }
+        }
+        finishBlock(block, blockValidCounts, blockSolvedCounts, blockSkippedCounts);
+    }
+
+    private synchronized void finishBlock(int block, long[] blockValidCounts, long[][] blockSolvedCounts,
+            long[] blockSkippedCounts) {
+        for (int index = 0; index < squareNumber; index++) {
+            validCounts[index] += blockValidCounts[index];
+            skippedCounts[index] += blockSkippedCounts[index];
+            for (int i = 0; i < SOLVER_NAMES.length; i++) {
+                solvedCounts[index][i] += blockSolvedCounts[index][i];
+            }
+        }
+        finishedBlocks.set(block);
+        if (System.currentTimeMillis() - lastCheckpointTime > CHECKPOINT_INTERVAL_MILLIS) {
+            try {
+                saveCheckpoint();
+            } catch (IOException e) {
+                System.out.println("cannot save checkpoint: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Run solvers on a layout
+     * @param solved filled with whether each solver solves it, in the order of SOLVER_NAMES
+     * @param symmetric whether to run the symmetric solvers too, otherwise only the others are run
+     * @return false if the layout is too large for BruteForceSolver, which then counts as unsolved
+     */
+    private boolean solve(long layout, int click, boolean[] solved, boolean symmetric) {
+        MineBoard mineBoard = boards.get();
+        for (int index = 0; index < squareNumber; index++) {
+            mineBoard.getSquare(index / column, index % column).setMine((layout >>> index & 1) != 0);
+        }
+        boolean solvedByBruteForce = true;
+        for (int i = 0; i < SOLVER_NAMES.length; i++) {
+            if (SYMMETRIC[i] && !symmetric) {
+                continue;
+            }
+            mineBoard.clearSolverOperation(click);
+            switch (i) {
+                case(0) :
+                    solved[i] = SinglePointSolver.getSolver().isSolvable(mineBoard, click);
+                    break;
+                case(1) :
+                    solved[i] = DSSPSolver.getSolver().isSolvable(mineBoard, click);
+                    break;
+                case(2) :
+                    solved[i] = SPwCSPSolver.getSolver().isSolvable(mineBoard, click);
+                    break;
+                default :
+                    try {
+                        solved[i] = BruteForceSolver.getSolver().isSolvable(mineBoard, click);
+                    } catch (BruteForceSolver.FrontierTooLargeException e) {
+                        solved[i] = false;
+                        solvedByBruteForce = false;
+                    }
+            }
+        }
+        return solvedByBruteForce;
+    }
+
+    /**
+     * Return whether the layout has the lowest rank among its images
+     * Layouts of the same mine number are in colexicographic order exactly when their bits are in numeric order,
+     * so bits are compared instead of ranks
+     * @param images filled with the layout under each symmetry
+     */
+    private boolean isCanonical(long layout, long[] images) {
+        for (int g = 0; g < symmetries.length; g++) {
+            long image = 0;
+            for (long rest = layout; rest != 0; rest &= rest - 1) {
+                image |= 1L << symmetries[g][Long.numberOfTrailingZeros(rest)];
+            }
+            images[g] = image;
+            if (Long.compareUnsigned(image, layout) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isRepeatedImage(long[] images, int g) {
+        for (int h = 0; h < g; h++) {
+            if (images[h] == images[g]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The layout of a rank, choosing from the highest mine down the largest position with C(position, i) <= rank
+     */
+    private long unrank(long rank) {
+        long layout = 0;
+        int position = squareNumber;
+        for (int i = mineNumber; i > 0; i--) {
+            do {
+                position--;
+            } while (binomials[position][i] > rank);
+            rank -= binomials[position][i];
+            layout |= 1L << position;
+        }
+        return layout;
+    }
+
+    /**
+     * The layout following this one in colexicographic order
+     * Gosper's hack: move the lowest movable mine up and pack the mines below it to the bottom
+     */
+    private static long nextLayout(long layout) {
+        if (layout == 0) {
+            return 0;
+        }
+        long lowest = layout & -layout;
+        long carried = layout + lowest;
+        return carried | ((layout ^ carried) >>> 2) / lowest;
+    }
+
+    /**
+     * Identity, flips and rotation by 180 degrees, and for square boards also transposes and rotations by 90 degrees
+     */
+    private int[][] buildSymmetries() {
+        ArrayList<int[]> result = new ArrayList<int[]>();
+        int transforms = row == column ? 8 : 4;
+        for (int g = 0; g < transforms; g++) {
+            int[] symmetry = new int[squareNumber];
+            for (int r = 0; r < row; r++) {
+                for (int c = 0; c < column; c++) {
+                    int newRow = (g & 1) != 0 ? row - 1 - r : r;
+                    int newCol = (g & 2) != 0 ? column - 1 - c : c;
+                    if ((g & 4) != 0) {
+                        int swap = newRow;
+                        newRow = newCol;
+                        newCol = swap;
+                    }
+                    symmetry[r * column + c] = newRow * column + newCol;
+                }
+            }
+            result.add(symmetry);
+        }
+        return result.toArray(new int[0][]);
+    }
+
+    /**
+     * Save finished blocks and counts, replacing the old checkpoint only when the new one is complete
+     */
+    private synchronized void saveCheckpoint() throws IOException {
+        lastCheckpointTime = System.currentTimeMillis();
+        if (checkpointFile == null) {
+            return;
+        }
+        File tempFile = new File(checkpointFile.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeInt(CHECKPOINT_VERSION);
+            output.writeInt(row);
+            output.writeInt(column);
+            output.writeInt(mineNumber);
+            long[] finished = finishedBlocks.toLongArray();
+            output.writeInt(finished.length);
+            for (long word : finished) {
+                output.writeLong(word);
+            }
+            for (int index = 0; index < squareNumber; index++) {
+                output.writeLong(validCounts[index]);
+                output.writeLong(skippedCounts[index]);
+                for (long count : solvedCounts[index]) {
+                    output.writeLong(count);
+                }
+            }
+        }
+        Files.move(tempFile.toPath(), checkpointFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void loadCheckpoint() throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+            if (input.readInt() != CHECKPOINT_VERSION || input.readInt() != row
+                || input.readInt() != column || input.readInt() != mineNumber) {
+                throw new IOException("checkpoint belongs to another census");
+            }
+            long[] finished = new long[input.readInt()];
+            for (int i = 0; i < finished.length; i++) {
+                finished[i] = input.readLong();
+            }
+            finishedBlocks.or(BitSet.valueOf(finished));
+            for (int index = 0; index < squareNumber; index++) {
+                validCounts[index] = input.readLong();
+                skippedCounts[index] = input.readLong();
+                for (int i = 0; i < SOLVER_NAMES.length; i++) {
+                    solvedCounts[index][i] = input.readLong();
+                }
+            }
+        }
+    }
+
+    /**
+     * Print the counts of every clicked square and their sums
+     */
+    public synchronized void printReport() {
+        System.out.printf("%-8s %12s", "click", "layouts");
+        for (String name : SOLVER_NAMES) {
+            System.out.printf(" %12s", name);
+        }
+        System.out.println();
+        long[] totalSolved = new long[SOLVER_NAMES.length];
+        long totalValid = 0;
+        long totalSkipped = 0;
+        for (int index = 0; index < squareNumber; index++) {
+            System.out.printf("%-8s %12d", index / column + "," + index % column, validCounts[index]);
+            for (int i = 0; i < SOLVER_NAMES.length; i++) {
+                System.out.printf(" %12d", solvedCounts[index][i]);
+                totalSolved[i] += solvedCounts[index][i];
+            }
+            System.out.println();
+            totalValid += validCounts[index];
+            totalSkipped += skippedCounts[index];
+        }
+        System.out.printf("%-8s %12d", "total", totalValid);
+        for (int i = 0; i < SOLVER_NAMES.length; i++) {
+            System.out.printf(" %11.2f%%", totalValid == 0 ? 0 : 100.0 * totalSolved[i] / totalValid);
+        }
+        System.out.println();
+        if (totalSkipped > 0) {
+            System.out.println(totalSkipped + " layouts too large for BruteForce are counted as unsolved by it");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Limits on the work of one solve
+ * A solve going over any of them gives up with SolveResult.BUDGET_EXHAUSTED
+ */
+public class SolveBudget {
+    public final static SolveBudget UNLIMITED = new SolveBudget(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    private final long maxNanos;
+    private final int maxSteps;
+    private final int maxConstraints;
+    private final long maxWork;
+
+    /**
+     * @param maxNanos time a solve may take, Long.MAX_VALUE for no deadline
+     *                 so that results do not depend on the speed of the machine
+     * @param maxSteps number of technique steps a solve may run
+     * @param maxConstraints number of constraints a solve may keep at once
+     * @param maxWork squares and constraints a solve may visit, counted like SPwCSPSolver.getWorkNumber
+     */
+    public SolveBudget(long maxNanos, int maxSteps, int maxConstraints, long maxWork) {
+        this.maxNanos = maxNanos;
+        this.maxSteps = maxSteps;
+        this.maxConstraints = maxConstraints;
+        this.maxWork = maxWork;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+
+    public int getMaxConstraints() {
+        return maxConstraints;
+    }
+
+    public long getMaxWork() {
+        return maxWork;
+    }
+}
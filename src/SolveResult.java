@@ -0,0 +1,9 @@
+/**
+ * Result of a solve with a budget
+ */
+public enum SolveResult {
+    SOLVABLE,
+    UNSOLVABLE,
+    // the solve was given up, the board may be either
+    BUDGET_EXHAUSTED
+}
@@ -0,0 +1,309 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Differential fuzzing of the solvers against each other and BruteForceSolver
+ * Random small boards are checked in parallel for
+ *   soundness: no solver flags a safe square or probes a mine
+ *   agreement: BitboardSolver accepts exactly what SinglePointSolver accepts
+ *   monotonicity: SinglePoint <= DSSP <= SPwCSP, Adaptive <= BruteForce in accepted boards
+ *   filtering: LayoutFilter rejects no board BruteForceSolver accepts
+ * Every failing board is shrunk to a minimal reproducer
+ *
+ * Usage: java SolverFuzzer [cases] [threads] [seed]
+ */
+public class SolverFuzzer {
+    private final static int MAX_SIDE = 8;
+
+    /**
+     * A board to be checked, mines[row * column + col] is true on mines
+     */
+    private static class Case {
+        private final int row;
+        private final int column;
+        private final boolean[] mines;
+        private final int clickedSquareIndex;
+
+        private Case(int row, int column, boolean[] mines, int clickedSquareIndex) {
+            this.row = row;
+            this.column = column;
+            this.mines = mines;
+            this.clickedSquareIndex = clickedSquareIndex;
+        }
+
+        private int getMineNumber() {
+            int count = 0;
+            for (boolean mine : mines) {
+                if (mine) count++;
+            }
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (int r = 0; r < row; r++) {
+                for (int c = 0; c < column; c++) {
+                    int index = r * column + c;
+                    builder.append(index == clickedSquareIndex ? 'o' : mines[index] ? '*' : '.');
+                }
+                builder.append('\n');
+            }
+            return builder.toString();
+        }
+    }
+
+    private final static String[] SOLVER_NAMES = {"SinglePoint", "Bitboard", "DSSP", "SPwCSP", "Adaptive", "BruteForce"};
+    // pairs of solvers where the first one must not accept more than the second one
+    private final static int[][] MONOTONIC_PAIRS = {{0, 2}, {2, 3}, {2, 4}, {3, 5}, {4, 5}};
+
+    // boards are reused per thread since creating squares is expensive
+    private final ThreadLocal<HashMap<Integer, MineBoard>> boards =
+        ThreadLocal.withInitial(() -> new HashMap<Integer, MineBoard>());
+    private final AtomicLongArray acceptedCounts = new AtomicLongArray(SOLVER_NAMES.length);
+    private final AtomicLong checkedCaseNumber = new AtomicLong();
+    private final AtomicLong skippedCaseNumber = new AtomicLong();
+    private final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<String>();
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        int caseNumber = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int threadNumber = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        new SolverFuzzer().run(caseNumber, threadNumber, seed);
+    }
+
+    /**
+     * Check random cases in parallel and print a report
+     */
+    public void run(int caseNumber, int threadNumber, long seed) throws InterruptedException {
+        System.out.println("seed " + seed);
+        SplittableRandom seedSource = new SplittableRandom(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(threadNumber);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < caseNumber; i++) {
+            long caseSeed = seedSource.nextLong();
+            executor.execute(() -> check(caseSeed));
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        System.out.printf("%d cases in %.1f s, %.0f cases/s, %d skipped for large frontiers%n",
+            checkedCaseNumber.get(), seconds, checkedCaseNumber.get() / seconds, skippedCaseNumber.get());
+        for (int i = 0; i < SOLVER_NAMES.length; i++) {
+            System.out.printf("%-12s accepted %d%n", SOLVER_NAMES[i], acceptedCounts.get(i));
+        }
+        System.out.println(failures.size() + " failures");
+        for (String failure : failures) {
+            System.out.println(failure);
+        }
+    }
+
+    private void check(long caseSeed) {
+        Case fuzzCase = randomCase(new SplittableRandom(caseSeed));
+        boolean[] accepted = new boolean[SOLVER_NAMES.length];
+        String failure;
+        try {
+            failure = findFailure(fuzzCase, accepted);
+        } catch (BruteForceSolver.FrontierTooLargeException e) {
+            skippedCaseNumber.incrementAndGet();
+            return;
+        }
+        checkedCaseNumber.incrementAndGet();
+        for (int i = 0; i < accepted.length; i++) {
+            if (accepted[i]) acceptedCounts.incrementAndGet(i);
+        }
+        if (failure != null) {
+            Case minimalCase = shrink(fuzzCase, failure);
+            failures.add("case seed " + caseSeed + ": " + failure + "\n" + minimalCase);
+        }
+    }
+
+    /**
+     * Generate a board the same way MineBoard does, with no mine around the clicked square
+     */
+    private Case randomCase(SplittableRandom random) {
+        int row = 3 + random.nextInt(MAX_SIDE - 2);
+        int column = 3 + random.nextInt(MAX_SIDE - 2);
+        int clickedRow = random.nextInt(row);
+        int clickedCol = random.nextInt(column);
+        ArrayList<Integer> candidates = new ArrayList<Integer>();
+        for (int r = 0; r < row; r++) {
+            for (int c = 0; c < column; c++) {
+                if (Math.abs(r - clickedRow) > 1 || Math.abs(c - clickedCol) > 1) {
+                    candidates.add(r * column + c);
+                }
+            }
+        }
+        boolean[] mines = new boolean[row * column];
+        if (candidates.isEmpty()) {
+            return new Case(row, column, mines, clickedRow * column + clickedCol);
+        }
+        int mineNumber = 1 + random.nextInt(candidates.size());
+        for (int i = 0; i < mineNumber; i++) {
+            int j = i + random.nextInt(candidates.size() - i);
+            Collections.swap(candidates, i, j);
+            mines[candidates.get(i)] = true;
+        }
+        return new Case(row, column, mines, clickedRow * column + clickedCol);
+    }
+
+    private boolean runSolver(int solverIndex, MineBoard mineBoard, int clickedSquareIndex) {
+        switch (solverIndex) {
+            case(0) :
+                return SinglePointSolver.getSolver().isSolvable(mineBoard, clickedSquareIndex);
+            case(1) :
+                return BitboardSolver.getSolver().isSolvable(mineBoard, clickedSquareIndex);
+            case(2) :
+                return DSSPSolver.getSolver().isSolvable(mineBoard, clickedSquareIndex);
+            case(3) :
+                return SPwCSPSolver.getSolver().isSolvable(mineBoard, clickedSquareIndex);
+            case(4) :
+                return AdaptiveSolver.getSolver().isSolvable(mineBoard, clickedSquareIndex);
+            default :
+                return BruteForceSolver.getSolver().isSolvable(mineBoard, clickedSquareIndex);
+        }
+    }
+
+    /**
+     * Run every solver on the case and find the first property it violates
+     * @param fuzzCase the case to be checked
+     * @param accepted filled with whether each solver accepts the case, in the order of SOLVER_NAMES
+     * @return description of the violation or null if none
+     * @throws BruteForceSolver.FrontierTooLargeException if the case is too large for BruteForceSolver
+     */
+    private String findFailure(Case fuzzCase, boolean[] accepted) {
+        MineBoard mineBoard = loadBoard(fuzzCase);
+        for (int i = 0; i < SOLVER_NAMES.length; i++) {
+            mineBoard.clearSolverOperation(fuzzCase.clickedSquareIndex);
+            try {
+                accepted[i] = runSolver(i, mineBoard, fuzzCase.clickedSquareIndex);
+            } catch (BruteForceSolver.FrontierTooLargeException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                // any other exception of a solver is a failure of it
+                return SOLVER_NAMES[i] + " threw " + e;
+            }
+            if (!isSound(mineBoard)) {
+                return SOLVER_NAMES[i] + " made a wrong deduction";
+            }
+        }
+        if (accepted[0] != accepted[1]) {
+            return "Bitboard disagrees with SinglePoint";
+        }
+        for (int[] pair : MONOTONIC_PAIRS) {
+            if (accepted[pair[0]] && !accepted[pair[1]]) {
+                return SOLVER_NAMES[pair[0]] + " accepts a board " + SOLVER_NAMES[pair[1]] + " rejects";
+            }
+        }
+        if (accepted[SOLVER_NAMES.length - 1] && findMotif(fuzzCase) != LayoutFilter.NONE) {
+            return "LayoutFilter rejects a board BruteForce accepts";
+        }
+        return null;
+    }
+
+    private int findMotif(Case fuzzCase) {
+        byte[] mineCounts = new byte[fuzzCase.mines.length];
+        for (int index = 0; index < fuzzCase.mines.length; index++) {
+            if (!fuzzCase.mines[index]) {
+                continue;
+            }
+            int row = index / fuzzCase.column;
+            int col = index % fuzzCase.column;
+            for (int r = Math.max(0, row - 1); r <= Math.min(fuzzCase.row - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(fuzzCase.column - 1, col + 1); c++) {
+                    mineCounts[r * fuzzCase.column + c]++;
+                }
+            }
+        }
+        return new LayoutFilter(fuzzCase.row, fuzzCase.column).check(fuzzCase.mines, mineCounts, fuzzCase.clickedSquareIndex);
+    }
+
+    /**
+     * Remove mines, rows and columns while the same violation remains
+     */
+    private Case shrink(Case fuzzCase, String failure) {
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            ArrayList<Case> candidates = new ArrayList<Case>();
+            for (int index = 0; index < fuzzCase.mines.length; index++) {
+                if (fuzzCase.mines[index]) {
+                    boolean[] mines = fuzzCase.mines.clone();
+                    mines[index] = false;
+                    candidates.add(new Case(fuzzCase.row, fuzzCase.column, mines, fuzzCase.clickedSquareIndex));
+                }
+            }
+            candidates.add(crop(fuzzCase, 1, 0, 0, 0));
+            candidates.add(crop(fuzzCase, 0, 1, 0, 0));
+            candidates.add(crop(fuzzCase, 0, 0, 1, 0));
+            candidates.add(crop(fuzzCase, 0, 0, 0, 1));
+            for (Case candidate : candidates) {
+                if (candidate != null && candidate.getMineNumber() > 0 && failure.equals(failureOf(candidate))) {
+                    fuzzCase = candidate;
+                    shrunk = true;
+                    break;
+                }
+            }
+        }
+        return fuzzCase;
+    }
+
+    private String failureOf(Case fuzzCase) {
+        try {
+            return findFailure(fuzzCase, new boolean[SOLVER_NAMES.length]);
+        } catch (BruteForceSolver.FrontierTooLargeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Cut rows or columns off the borders of a case
+     * @return the smaller case or null if the clicked square would be cut
+     */
+    private Case crop(Case fuzzCase, int top, int bottom, int left, int right) {
+        int row = fuzzCase.row - top - bottom;
+        int column = fuzzCase.column - left - right;
+        int clickedRow = fuzzCase.clickedSquareIndex / fuzzCase.column - top;
+        int clickedCol = fuzzCase.clickedSquareIndex % fuzzCase.column - left;
+        if (row < 1 || column < 1 || clickedRow < 0 || clickedRow >= row || clickedCol < 0 || clickedCol >= column) {
+            return null;
+        }
+        boolean[] mines = new boolean[row * column];
+        for (int r = 0; r < row; r++) {
+            for (int c = 0; c < column; c++) {
+                mines[r * column + c] = fuzzCase.mines[(r + top) * fuzzCase.column + c + left];
+            }
+        }
+        return new Case(row, column, mines, clickedRow * column + clickedCol);
+    }
+
+    private MineBoard loadBoard(Case fuzzCase) {
+        int mineNumber = fuzzCase.getMineNumber();
+        int key = (fuzzCase.row * 64 + fuzzCase.column) * 4096 + mineNumber;
+        MineBoard mineBoard = boards.get().get(key);
+        if (mineBoard == null) {
+            mineBoard = new MineBoard(fuzzCase.row, fuzzCase.column, mineNumber);
+            mineBoard.createSquares();
+            boards.get().put(key, mineBoard);
+        }
+        for (int index = 0; index < fuzzCase.mines.length; index++) {
+            mineBoard.getSquare(index / fuzzCase.column, index % fuzzCase.column).setMine(fuzzCase.mines[index]);
+        }
+        return mineBoard;
+    }
+
+    private boolean isSound(MineBoard mineBoard) {
+        for (int row = 0; row < mineBoard.getRow(); row++) {
+            for (int col = 0; col < mineBoard.getColumn(); col++) {
+                SquareButton square = mineBoard.getSquare(row, col);
+                if (square.isFlagged() ? !square.isMine() : !square.isEnabled() && square.isMine()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
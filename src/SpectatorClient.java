@@ -0,0 +1,87 @@
+import java.io.*;
+import java.net.*;
+
+/**
+ * A spectator following a game published by SpectatorServer
+ * Applies keyframes and delta frames to its own copy of the board
+ *
+ * Usage: java SpectatorClient [port]
+ */
+public class SpectatorClient {
+    private final DataInputStream input;
+
+    private int gridRow, gridColumn;
+    private byte[] visibleStates = new byte[0];
+    private byte status;
+    private long sequence;
+
+    public SpectatorClient(int port) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : SpectatorServer.DEFAULT_PORT;
+        SpectatorClient client = new SpectatorClient(port);
+        while (true) {
+            client.readFrame();
+            System.out.println(client);
+        }
+    }
+
+    /**
+     * Read one frame and apply it
+     */
+    public void readFrame() throws IOException {
+        byte[] frame = new byte[(int) SpectatorServer.readVarint(input)];
+        input.readFully(frame);
+        ByteArrayInputStream body = new ByteArrayInputStream(frame);
+        int type = body.read();
+        sequence = SpectatorServer.readVarint(body);
+        status = (byte) body.read();
+        if (type == SpectatorServer.FRAME_KEY) {
+            gridRow = (int) SpectatorServer.readVarint(body);
+            gridColumn = (int) SpectatorServer.readVarint(body);
+            visibleStates = new byte[gridRow * gridColumn];
+            body.read(visibleStates, 0, visibleStates.length);
+        } else {
+            long runNumber = SpectatorServer.readVarint(body);
+            int end = 0;
+            for (long run = 0; run < runNumber; run++) {
+                int start = end + (int) SpectatorServer.readVarint(body);
+                int length = (int) SpectatorServer.readVarint(body);
+                body.read(visibleStates, start, length);
+                end = start + length;
+            }
+        }
+    }
+
+    public byte getStatus() {
+        return status;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public byte getVisibleState(int row, int col) {
+        return visibleStates[row * gridColumn + col];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("#").append(sequence).append(" status ").append(status).append('\n');
+        for (int row = 0; row < gridRow; row++) {
+            for (int col = 0; col < gridColumn; col++) {
+                byte state = visibleStates[row * gridColumn + col];
+                if (state == SpectatorServer.SQUARE_COVERED) builder.append('#');
+                else if (state == SpectatorServer.SQUARE_FLAGGED) builder.append('F');
+                else if (state == SpectatorServer.SQUARE_MINE) builder.append('*');
+                else builder.append(state - SpectatorServer.NUMBER_BASE);
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
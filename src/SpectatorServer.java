@@ -0,0 +1,302 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Broadcast board changes to spectators over a loopback socket
+ * Every move is sent as a delta frame holding runs of changed squares,
+ * so its size depends on the squares changed rather than the board size.
+ * Keyframes holding the whole board are sent to new spectators,
+ * to spectators who fell behind and periodically to everyone.
+ *
+ * Frames are length-prefixed with a varint and laid out as
+ *   type (FRAME_KEY or FRAME_DELTA), varint sequence, status,
+ *   keyframe: varint row, varint column, one state per square
+ *   delta: varint run number, then per run varint gap from the previous run,
+ *          varint length and one state per square
+ */
+public class SpectatorServer {
+    public final static int DEFAULT_PORT = 40404;
+
+    public final static byte FRAME_KEY = 0;
+    public final static byte FRAME_DELTA = 1;
+
+    public final static byte STATUS_PLAYING = 0;
+    public final static byte STATUS_CLEAR = 1;
+    public final static byte STATUS_FAILED = 2;
+
+    // states of squares seen by spectators, numbers are NUMBER_BASE + count
+    public final static byte SQUARE_COVERED = 0;
+    public final static byte SQUARE_FLAGGED = 1;
+    public final static byte SQUARE_MINE = 2;
+    public final static byte NUMBER_BASE = 3;
+
+    private final static int KEYFRAME_INTERVAL = 64;
+    private final static int QUEUE_CAPACITY = 32;
+
+    /**
+     * A connected spectator with its own queue and writer thread
+     */
+    private class Subscriber implements Runnable {
+        private final Socket socket;
+        private final ArrayBlockingQueue<byte[]> frames = new ArrayBlockingQueue<byte[]>(QUEUE_CAPACITY);
+
+        private Subscriber(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Queue a frame without blocking
+         * If the queue is full the spectator is behind, so pending frames are dropped
+         * and replaced by a keyframe of what spectators see now, which includes the frame.
+         * Holds the lock publishing frames, so no frame can be queued between the two
+         */
+        private void offer(byte[] frame) {
+            synchronized (SpectatorServer.this) {
+                if (!frames.offer(frame)) {
+                    frames.clear();
+                    frames.offer(encodeKeyframe());
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try (OutputStream output = new BufferedOutputStream(socket.getOutputStream())) {
+                while (true) {
+                    byte[] frame = frames.take();
+                    output.write(frame);
+                    if (frames.isEmpty()) {
+                        output.flush();
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // the spectator left
+            } finally {
+                subscribers.remove(this);
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<Subscriber>();
+
+    // what spectators currently see, used to build keyframes
+    private int gridRow, gridColumn;
+    private byte[] visibleStates = new byte[0];
+    private byte status = STATUS_PLAYING;
+    private long sequence;
+
+    /**
+     * Start accepting spectators on the loopback interface
+     * @param port port to listen on, 0 for any free port
+     */
+    public SpectatorServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptThread = new Thread(this::acceptSubscribers, "spectator-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getSubscriberNumber() {
+        return subscribers.size();
+    }
+
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.socket.close();
+        }
+    }
+
+    private void acceptSubscribers() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Subscriber subscriber = new Subscriber(socket);
+                synchronized (this) {
+                    subscribers.add(subscriber);
+                    subscriber.offer(encodeKeyframe());
+                }
+                Thread writerThread = new Thread(subscriber, "spectator-writer");
+                writerThread.setDaemon(true);
+                writerThread.start();
+            } catch (IOException e) {
+                // the server is closed
+            }
+        }
+    }
+
+    /**
+     * Publish the squares changed by the last move
+     * Only encodes frames and queues them, so it never blocks the game thread
+     * @param mineBoard the board played on
+     */
+    public synchronized void publish(MineBoard mineBoard) {
+        int[] changedIndices = mineBoard.drainChangedSquares();
+        byte newStatus = mineBoard.isClear() ? STATUS_CLEAR
+            : mineBoard.isFailed() ? STATUS_FAILED : STATUS_PLAYING;
+        boolean resized = mineBoard.getRow() != gridRow || mineBoard.getColumn() != gridColumn;
+        boolean statusChanged = newStatus != status;
+        sequence++;
+        if (resized) {
+            gridRow = mineBoard.getRow();
+            gridColumn = mineBoard.getColumn();
+            visibleStates = new byte[gridRow * gridColumn];
+            changedIndices = new int[visibleStates.length];
+            for (int i = 0; i < changedIndices.length; i++) {
+                changedIndices[i] = i;
+            }
+        }
+        status = newStatus;
+
+        // keep only squares whose visible state really changed
+        int changedNumber = 0;
+        if (statusChanged || resized) {
+            // mines become visible or hidden with the status, so recheck every square
+            for (int index = 0; index < visibleStates.length; index++) {
+                if (updateVisibleState(mineBoard, index)) {
+                    changedIndices = growIfNeeded(changedIndices, changedNumber);
+                    changedIndices[changedNumber++] = index;
+                }
+            }
+        } else {
+            for (int index : changedIndices) {
+                if (updateVisibleState(mineBoard, index)) {
+                    changedIndices[changedNumber++] = index;
+                }
+            }
+        }
+
+        byte[] delta = encodeDelta(changedIndices, changedNumber);
+        byte[] keyframe = null;
+        boolean keyframeForAll = resized || sequence % KEYFRAME_INTERVAL == 0;
+        for (Subscriber subscriber : subscribers) {
+            if (keyframeForAll) {
+                if (keyframe == null) {
+                    keyframe = encodeKeyframe();
+                }
+                subscriber.offer(keyframe);
+            } else if (changedNumber > 0) {
+                subscriber.offer(delta);
+            }
+        }
+    }
+
+    /**
+     * @return whether the visible state of the square changed
+     */
+    private boolean updateVisibleState(MineBoard mineBoard, int index) {
+        byte squareState = mineBoard.getSquareState(index);
+        byte visibleState;
+        if ((squareState & BoardState.PROBED) != 0) {
+            if ((squareState & BoardState.MINE) != 0) {
+                visibleState = SQUARE_MINE;
+            } else {
+                SquareButton square = mineBoard.getSquare(index / gridColumn, index % gridColumn);
+                visibleState = (byte) (NUMBER_BASE + mineBoard.countNeighor(square, MineBoard.COUNT_NEIGHBOR_MINE));
+            }
+        } else if ((squareState & BoardState.MINE) != 0 && status != STATUS_PLAYING) {
+            // mines are only shown when the game is over
+            visibleState = status == STATUS_CLEAR ? SQUARE_FLAGGED : SQUARE_MINE;
+        } else if ((squareState & BoardState.FLAGGED) != 0) {
+            visibleState = SQUARE_FLAGGED;
+        } else {
+            visibleState = SQUARE_COVERED;
+        }
+        if (visibleStates[index] == visibleState) {
+            return false;
+        }
+        visibleStates[index] = visibleState;
+        return true;
+    }
+
+    private byte[] encodeKeyframe() {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(visibleStates.length + 16);
+        body.write(FRAME_KEY);
+        writeVarint(body, sequence);
+        body.write(status);
+        writeVarint(body, gridRow);
+        writeVarint(body, gridColumn);
+        body.write(visibleStates, 0, visibleStates.length);
+        return withLength(body);
+    }
+
+    private byte[] encodeDelta(int[] changedIndices, int changedNumber) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(changedNumber * 2 + 16);
+        body.write(FRAME_DELTA);
+        writeVarint(body, sequence);
+        body.write(status);
+        int runNumber = 0;
+        for (int i = 0; i < changedNumber; i++) {
+            if (i == 0 || changedIndices[i] != changedIndices[i - 1] + 1) {
+                runNumber++;
+            }
+        }
+        writeVarint(body, runNumber);
+        int end = 0;
+        int i = 0;
+        while (i < changedNumber) {
+            int start = changedIndices[i];
+            int length = 1;
+            while (i + length < changedNumber && changedIndices[i + length] == start + length) {
+                length++;
+            }
+            writeVarint(body, start - end);
+            writeVarint(body, length);
+            body.write(visibleStates, start, length);
+            end = start + length;
+            i += length;
+        }
+        return withLength(body);
+    }
+
+    private static byte[] withLength(ByteArrayOutputStream body) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(body.size() + 5);
+        writeVarint(frame, body.size());
+        frame.write(body.toByteArray(), 0, body.size());
+        return frame.toByteArray();
+    }
+
+    private static int[] growIfNeeded(int[] array, int size) {
+        return size < array.length ? array : Arrays.copyOf(array, Math.max(16, array.length * 2));
+    }
+
+    static void writeVarint(OutputStream output, long value) {
+        try {
+            while ((value & ~0x7FL) != 0) {
+                output.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            output.write((int) value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static long readVarint(InputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+}